@@ -0,0 +1,121 @@
+package org.fingertap.snippets;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmark input. corpus is "synthetic" (random words and sentence lengths), "wikipedia" (the paragraph used
+ * by the unit tests, repeated) or a path to a UTF-8 text file. Terms are drawn from the corpus vocabulary and,
+ * for synthetic text, planted so that matchDensity percent of the words are matches.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkCorpus {
+    static final String WIKIPEDIA = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy. In the West during the early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\"). ";
+
+    @Param({"synthetic", "wikipedia"})
+    public String corpus;
+
+    @Param({"2000", "200000"})
+    public int textLength;
+
+    @Param({"1", "30", "200"})
+    public int termCount;
+
+    @Param({"0.5", "5"})
+    public double matchDensity;
+
+    String text;
+    List<String> terms;
+    // one long sentence without full stops, the worst case for truncation
+    String longSentence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+
+        if ("synthetic".equals(corpus)) {
+            List<String> vocabulary = vocabulary(random, 5000);
+            terms = new ArrayList<>(vocabulary.subList(0, termCount));
+            text = synthetic(random, vocabulary.subList(termCount, vocabulary.size()), true);
+            longSentence = synthetic(random, vocabulary.subList(termCount, vocabulary.size()), false);
+        } else {
+            String source = "wikipedia".equals(corpus) ? WIKIPEDIA
+                    : new String(Files.readAllBytes(Paths.get(corpus)), StandardCharsets.UTF_8);
+
+            text = repeat(source, textLength);
+            terms = wordsOf(source, termCount);
+            longSentence = repeat(source.replace('.', ','), textLength);
+        }
+    }
+
+    private static List<String> vocabulary(Random random, int size) {
+        Set<String> words = new LinkedHashSet<>();
+
+        while (words.size() < size) {
+            int length = 3 + random.nextInt(8);
+            StringBuilder word = new StringBuilder(length);
+            for (int i = 0; i < length; i++)
+                word.append((char) ('a' + random.nextInt(26)));
+            words.add(word.toString());
+        }
+
+        return new ArrayList<>(words);
+    }
+
+    private String synthetic(Random random, List<String> words, boolean sentences) {
+        StringBuilder builder = new StringBuilder(textLength + 64);
+        int sentenceLeft = 5 + random.nextInt(35);
+        boolean capitalize = true;
+
+        while (builder.length() < textLength) {
+            boolean match = random.nextDouble() * 100 < matchDensity;
+            String word = match ? terms.get(random.nextInt(terms.size())) : words.get(random.nextInt(words.size()));
+
+            // sentence iterators only break before an upper case letter
+            builder.append(capitalize ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            capitalize = false;
+
+            if (sentences && --sentenceLeft == 0) {
+                builder.append(". ");
+                sentenceLeft = 5 + random.nextInt(35);
+                capitalize = true;
+            } else {
+                builder.append(' ');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static String repeat(String source, int length) {
+        StringBuilder builder = new StringBuilder(length + source.length());
+        while (builder.length() < length)
+            builder.append(source);
+
+        return builder.toString();
+    }
+
+    private static List<String> wordsOf(String source, int count) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : source.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 2)
+                words.add(word.toLowerCase());
+        }
+
+        List<String> terms = new ArrayList<>(words);
+        return terms.subList(0, Math.min(count, terms.size()));
+    }
+}
@@ -0,0 +1,148 @@
+package org.fingertap.snippets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per stage throughput of the current pipeline next to the original implementation: sentence breaking with
+ * BreakIterator and with FastSentenceSegmenter, term matching over every sentence, truncation of one long
+ * sentence, and end to end construction. Run with -prof gc (the default jmh.args) to get bytes allocated per op.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @State(Scope.Thread)
+    public static class Pipeline {
+        SnippetExtractor extractor;
+        SnippetExtractor fastExtractor;
+        SnippetExtractor.Scratch scratch;
+        LegacySnippets legacy;
+        List<String> legacySentences;
+        int[] sentences;
+        MatchBuffer longSentenceMatches;
+        Snippet legacyLongSentence;
+        SnippetBuffer offsets;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkCorpus corpus) {
+            extractor = SnippetExtractor.builder().terms(corpus.terms).build();
+            fastExtractor = SnippetExtractor.builder().terms(corpus.terms)
+                    .segmenter(new FastSentenceSegmenter()).build();
+            scratch = new SnippetExtractor.Scratch();
+            legacy = new LegacySnippets();
+            offsets = new SnippetBuffer();
+
+            legacySentences = legacy.breakTextIntoSentences(corpus.text);
+            extractor.breakTextIntoSentences(corpus.text, scratch);
+            sentences = scratch.sentences.toArray();
+
+            longSentenceMatches = new MatchBuffer();
+            extractor.getMatcher().match(corpus.longSentence, 0, corpus.longSentence.length(), longSentenceMatches);
+            longSentenceMatches.sort();
+            legacyLongSentence = new Snippet(corpus.longSentence,
+                    legacy.findMatchedTerms(corpus.longSentence, corpus.terms));
+        }
+    }
+
+    @Benchmark
+    public IntArray breakTextIntoSentences(BenchmarkCorpus corpus, Pipeline pipeline) {
+        pipeline.extractor.breakTextIntoSentences(corpus.text, pipeline.scratch);
+        return pipeline.scratch.sentences;
+    }
+
+    @Benchmark
+    public IntArray fastBreakTextIntoSentences(BenchmarkCorpus corpus, Pipeline pipeline) {
+        pipeline.fastExtractor.breakTextIntoSentences(corpus.text, pipeline.scratch);
+        return pipeline.scratch.sentences;
+    }
+
+    @Benchmark
+    public List<String> legacyBreakTextIntoSentences(BenchmarkCorpus corpus, Pipeline pipeline) {
+        return pipeline.legacy.breakTextIntoSentences(corpus.text);
+    }
+
+    @Benchmark
+    public int findMatchedTerms(BenchmarkCorpus corpus, Pipeline pipeline) {
+        MatchBuffer matches = pipeline.scratch.matches;
+        int[] lastEnds = pipeline.scratch.lastEnds(pipeline.extractor.getMatcher().size());
+        int found = 0;
+
+        for (int i = 0; i < pipeline.sentences.length; i += 2) {
+            matches.clear();
+            pipeline.extractor.getMatcher().match(corpus.text, pipeline.sentences[i], pipeline.sentences[i + 1],
+                    lastEnds, matches);
+            found += matches.size();
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public void legacyFindMatchedTerms(BenchmarkCorpus corpus, Pipeline pipeline, Blackhole blackhole) {
+        for (String sentence : pipeline.legacySentences)
+            blackhole.consume(pipeline.legacy.findMatchedTerms(sentence, corpus.terms));
+    }
+
+    @Benchmark
+    public Snippet checkSnippetTextSize(BenchmarkCorpus corpus, Pipeline pipeline) {
+        MatchBuffer matches = pipeline.longSentenceMatches;
+        SnippetWindow window = pipeline.scratch.window;
+
+        if (matches.size() == 0)
+            return null;
+
+        window.fit(corpus.longSentence, 0, corpus.longSentence.length(), matches.start(0), matches.end(0),
+                pipeline.extractor.getMaxSnippetLength(), pipeline.extractor.getLookaheadCount());
+        return window.toSnippet(corpus.longSentence, matches, 0, matches.size());
+    }
+
+    @Benchmark
+    public Snippet legacyCheckSnippetTextSize(BenchmarkCorpus corpus, Pipeline pipeline) {
+        if (pipeline.legacyLongSentence.getMatchedTerms().isEmpty())
+            return null;
+
+        return pipeline.legacy.checkSnippetTextSize(pipeline.legacyLongSentence, corpus.terms);
+    }
+
+    @Benchmark
+    public List<Snippet> snippets(BenchmarkCorpus corpus) {
+        return new Snippets(corpus.text, corpus.terms).getSnippets();
+    }
+
+    @Benchmark
+    public List<Snippet> legacySnippets(BenchmarkCorpus corpus) {
+        return new LegacySnippets(corpus.text, corpus.terms).getSnippets();
+    }
+
+    @Benchmark
+    public List<Snippet> reusedExtractor(BenchmarkCorpus corpus, Pipeline pipeline) {
+        return pipeline.extractor.extract(corpus.text);
+    }
+
+    @Benchmark
+    public SnippetBuffer fastSegmenterOffsets(BenchmarkCorpus corpus, Pipeline pipeline) {
+        return pipeline.fastExtractor.extract(corpus.text, pipeline.offsets);
+    }
+
+    @Benchmark
+    public SnippetBuffer reusedExtractorOffsets(BenchmarkCorpus corpus, Pipeline pipeline) {
+        return pipeline.extractor.extract(corpus.text, pipeline.offsets);
+    }
+}
@@ -0,0 +1,78 @@
+package org.fingertap.snippets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Term matching with the automaton alone, behind the scalar candidate scanner and behind the vector one, over the
+ * whole text (as in ranked mode) and sentence by sentence. The scanners only apply to queries of up to
+ * CandidateScanner.MAX_TERMS terms, e.g. -p termCount=1 -p corpus=synthetic. The vector scanner needs JDK 17+,
+ * where the vector profile adds the incubator module; elsewhere it measures the scalar one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScannerBenchmark {
+
+    @State(Scope.Thread)
+    public static class Scanning {
+        @Param({"automaton", "scalar", "vector"})
+        public String scanner;
+
+        TermMatcher matcher;
+        MatchBuffer matches;
+        int[] sentences;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkCorpus corpus) {
+            TermMatcher compiled = TermMatcher.compile(corpus.terms);
+            CandidateScanner candidates = compiled.scanner();
+
+            if ("automaton".equals(scanner) || candidates == null)
+                matcher = compiled.withScanner(null);
+            else
+                matcher = "scalar".equals(scanner) ? compiled.withScanner(candidates.scalar()) : compiled;
+
+            matches = new MatchBuffer();
+            SnippetExtractor.Scratch scratch = new SnippetExtractor.Scratch();
+            SnippetExtractor.builder().terms(corpus.terms).build().breakTextIntoSentences(corpus.text, scratch);
+            sentences = scratch.sentences.toArray();
+        }
+    }
+
+    @Benchmark
+    public int matchText(BenchmarkCorpus corpus, Scanning scanning) {
+        scanning.matches.clear();
+        scanning.matcher.match(corpus.text, 0, corpus.text.length(), scanning.matches);
+        return scanning.matches.size();
+    }
+
+    @Benchmark
+    public int matchSentences(BenchmarkCorpus corpus, Scanning scanning) {
+        int[] lastEnds = new int[scanning.matcher.size()];
+        int found = 0;
+
+        for (int i = 0; i < scanning.sentences.length; i += 2) {
+            scanning.matches.clear();
+            scanning.matcher.match(corpus.text, scanning.sentences[i], scanning.sentences[i + 1], lastEnds,
+                    scanning.matches);
+            found += scanning.matches.size();
+        }
+
+        return found;
+    }
+}
@@ -0,0 +1,46 @@
+package org.fingertap.snippets;
+
+import java.text.BreakIterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntConsumer;
+
+/**
+ * The default segmenter, java.text.BreakIterator's sentence instance with one iterator per thread.
+ */
+public final class BreakIteratorSentenceSegmenter implements SentenceSegmenter {
+    static final BreakIteratorSentenceSegmenter DEFAULT = new BreakIteratorSentenceSegmenter();
+
+    private static final ConcurrentMap<Locale, BreakIteratorSentenceSegmenter> BY_LOCALE = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<BreakIterator> iterators;
+
+    // the default locale's rules
+    public BreakIteratorSentenceSegmenter() {
+        this.iterators = ThreadLocal.withInitial(BreakIterator::getSentenceInstance);
+    }
+
+    public BreakIteratorSentenceSegmenter(Locale locale) {
+        this.iterators = ThreadLocal.withInitial(() -> BreakIterator.getSentenceInstance(locale));
+    }
+
+    // shared instance per locale, so extractors built per request reuse their threads' iterators
+    public static BreakIteratorSentenceSegmenter forLocale(Locale locale) {
+        return BY_LOCALE.computeIfAbsent(locale, BreakIteratorSentenceSegmenter::new);
+    }
+
+    @Override
+    public void segment(CharSequence text, int start, int end, IntConsumer sentenceEnds) {
+        BreakIterator boundary = iterators.get();
+
+        if (text instanceof String && start == 0 && end == text.length())
+            boundary.setText((String) text);
+        else
+            boundary.setText(new CharSequenceIterator(text, start, end));
+
+        boundary.first();
+        for (int next = boundary.next(); next != BreakIterator.DONE; next = boundary.next())
+            sentenceEnds.accept(next);
+    }
+}
@@ -0,0 +1,184 @@
+package org.fingertap.snippets;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+
+/**
+ * Prefilter for TermMatcher on short queries: finds the next position where the first two chars of some term
+ * occur, ASCII case folded, so the automaton can skip text that can't start a match. Non-ASCII chars are always
+ * candidates, since they may fold to ASCII ones. On JDK 17+ with the jdk.incubator.vector module the scan is
+ * vectorized by VectorCandidateScanner, elsewhere it is this scalar loop. Immutable and thread-safe.
+ */
+class CandidateScanner {
+    // beyond this many terms most positions are candidates and the automaton alone is faster
+    static final int MAX_TERMS = 8;
+    // shorter ranges aren't worth copying out of the CharSequence
+    static final int MIN_LENGTH = 32;
+    // chars copied out of the CharSequence at a time, so scanning a huge text holds no more than this
+    static final int CHUNK_LENGTH = 2048;
+
+    private static final Constructor<? extends CandidateScanner> VECTORIZED = vectorized();
+    private static final ThreadLocal<Chunk> CHUNKS = ThreadLocal.withInitial(Chunk::new);
+
+    // a char c matches the pair element when (c | bits) == value; bits 0x20 fold ASCII letters, 0xFFFF is any char
+    final char[] firsts;
+    final char[] firstBits;
+    final char[] seconds;
+    final char[] secondBits;
+
+    CandidateScanner(char[] firsts, char[] firstBits, char[] seconds, char[] secondBits) {
+        this.firsts = firsts;
+        this.firstBits = firstBits;
+        this.seconds = seconds;
+        this.secondBits = secondBits;
+    }
+
+    /**
+     * Scanner for the terms, or null when they don't suit one: word rule terms, which are compared per word, too
+     * many terms, or a term starting with a space or a non-ASCII char.
+     */
+    static CandidateScanner forTerms(List<String> terms, byte[] rules, boolean foldSpaces) {
+        if (terms.isEmpty() || terms.size() > MAX_TERMS)
+            return null;
+
+        int n = terms.size();
+        char[] firsts = new char[n], firstBits = new char[n], seconds = new char[n], secondBits = new char[n];
+
+        for (int id = 0; id < n; id++) {
+            String term = terms.get(id);
+            if (term.isEmpty() || rules != null && WordTerms.isWordRule(rules[id]))
+                return null;
+
+            char first = TermMatcher.fold(term.charAt(0), foldSpaces);
+            if (!folds(first))
+                return null;
+            firsts[id] = first;
+            firstBits[id] = bits(first);
+
+            char second = term.length() > 1 ? TermMatcher.fold(term.charAt(1), foldSpaces) : '\uFFFF';
+            if (term.length() > 1 && !folds(second))
+                return null;
+            seconds[id] = term.length() > 1 ? second : '\uFFFF';
+            secondBits[id] = term.length() > 1 ? bits(second) : '\uFFFF';
+        }
+
+        if (VECTORIZED != null) {
+            try {
+                return VECTORIZED.newInstance(firsts, firstBits, seconds, secondBits);
+            } catch (ReflectiveOperationException e) {
+                // use the scalar loop
+            }
+        }
+
+        return new CandidateScanner(firsts, firstBits, seconds, secondBits);
+    }
+
+    // ASCII chars other than spaces, which fold to any whitespace char
+    private static boolean folds(char c) {
+        return c < 0x80 && !SnippetWindow.isSpace(c);
+    }
+
+    private static char bits(char c) {
+        return c >= 'a' && c <= 'z' ? (char) 0x20 : 0;
+    }
+
+    private static Constructor<? extends CandidateScanner> vectorized() {
+        try {
+            Constructor<? extends CandidateScanner> constructor = Class
+                    .forName("org.fingertap.snippets.VectorCandidateScanner").asSubclass(CandidateScanner.class)
+                    .getDeclaredConstructor(char[].class, char[].class, char[].class, char[].class);
+
+            // loading the class isn't enough, the vector module only resolves once the scanner runs
+            char[] probe = new char[]{'a'};
+            constructor.newInstance(probe, probe, probe, probe).next(new char[64], 0, 64);
+            return constructor;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    static boolean isVectorized() {
+        return VECTORIZED != null;
+    }
+
+    // the same pairs scanned by the scalar loop
+    CandidateScanner scalar() {
+        return new CandidateScanner(firsts, firstBits, seconds, secondBits);
+    }
+
+    // this thread's chunk, emptied for a new scan
+    static Chunk chunk() {
+        Chunk chunk = CHUNKS.get();
+        chunk.start = chunk.end = 0;
+        return chunk;
+    }
+
+    /**
+     * First position in text[from, to) where a term may start, to when there is none. The text is copied into
+     * the chunk as the scan moves forward, so from must not go back between calls on the same chunk.
+     */
+    final int next(CharSequence text, int from, int to, Chunk chunk) {
+        while (from < to) {
+            if (from >= chunk.end)
+                chunk.fill(text, from, to);
+
+            int i = chunk.start + next(chunk.chars, from - chunk.start, chunk.end - chunk.start);
+            if (i < chunk.end)
+                return i;
+            from = chunk.end;
+        }
+
+        return to;
+    }
+
+    // first position in text[from, to) where a term may start, to when there is none
+    int next(char[] text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (isCandidate(text, i, to))
+                return i;
+        }
+
+        return to;
+    }
+
+    // the char after the last one is unknown, so only the first of each pair is checked there
+    final boolean isCandidate(char[] text, int i, int to) {
+        char c = text[i];
+        if (c >= 0x80)
+            return true;
+
+        char following = i + 1 < to ? text[i + 1] : '\uFFFF';
+        for (int t = 0; t < firsts.length; t++) {
+            if ((c | firstBits[t]) == firsts[t]
+                    && (following >= 0x80 || (following | secondBits[t]) == seconds[t]))
+                return true;
+        }
+
+        return false;
+    }
+
+    // fixed size window of the text being scanned; the char past its end is unknown, which at worst adds a candidate
+    static final class Chunk {
+        private final char[] chars = new char[CHUNK_LENGTH];
+        private int start;
+        private int end;
+
+        private void fill(CharSequence text, int from, int to) {
+            start = from;
+            end = Math.min(from + chars.length, to);
+
+            if (text instanceof String) {
+                ((String) text).getChars(start, end, chars, 0);
+            } else if (text instanceof StringBuilder) {
+                ((StringBuilder) text).getChars(start, end, chars, 0);
+            } else {
+                for (int i = start; i < end; i++)
+                    chars[i - start] = text.charAt(i);
+            }
+        }
+
+        int capacity() {
+            return chars.length;
+        }
+    }
+}
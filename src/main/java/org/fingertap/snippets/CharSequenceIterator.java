@@ -0,0 +1,83 @@
+package org.fingertap.snippets;
+
+import java.text.CharacterIterator;
+
+// lets BreakIterator walk any CharSequence without copying it into a String
+final class CharSequenceIterator implements CharacterIterator {
+    private final CharSequence text;
+    private final int begin;
+    private final int end;
+    private int pos;
+
+    CharSequenceIterator(CharSequence text, int begin, int end) {
+        this.text = text;
+        this.begin = begin;
+        this.end = end;
+        this.pos = begin;
+    }
+
+    @Override
+    public char first() {
+        pos = begin;
+        return current();
+    }
+
+    @Override
+    public char last() {
+        pos = end > begin ? end - 1 : end;
+        return current();
+    }
+
+    @Override
+    public char current() {
+        return pos >= begin && pos < end ? text.charAt(pos) : DONE;
+    }
+
+    @Override
+    public char next() {
+        if (pos < end)
+            pos++;
+
+        return current();
+    }
+
+    @Override
+    public char previous() {
+        if (pos <= begin)
+            return DONE;
+
+        pos--;
+        return current();
+    }
+
+    @Override
+    public char setIndex(int position) {
+        if (position < begin || position > end)
+            throw new IllegalArgumentException("Invalid index " + position);
+
+        pos = position;
+        return current();
+    }
+
+    @Override
+    public int getBeginIndex() {
+        return begin;
+    }
+
+    @Override
+    public int getEndIndex() {
+        return end;
+    }
+
+    @Override
+    public int getIndex() {
+        return pos;
+    }
+
+    @Override
+    public Object clone() {
+        CharSequenceIterator clone = new CharSequenceIterator(text, begin, end);
+        clone.pos = pos;
+        return clone;
+    }
+}
@@ -0,0 +1,210 @@
+package org.fingertap.snippets;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only store of document bodies kept off-heap as UTF-8 in a memory mapped file, so millions of documents
+ * don't live on the heap as Strings. {@link #get(long)} returns a {@link Utf8CharSequence} over the mapped bytes
+ * that SnippetExtractor can work on directly. Opening maps the file without reading it: the id to offset index is
+ * stored sorted at the end of the file and binary searched in place. Thread-safe; views are per caller.
+ *
+ * Layout: document bytes, packed into 1 GB segments that no document crosses, then one index entry per document
+ * (id, byte offset, byte length, char length) sorted by id, then a footer with the index offset, the document
+ * count, the segment shift and a magic number.
+ */
+public final class DocumentStore {
+    private static final int MAGIC = 0x534E5044;
+    private static final int ENTRY_SIZE = 24;
+    private static final int FOOTER_SIZE = 20;
+    // the index is mapped as a single buffer
+    private static final int MAX_DOCUMENTS = Integer.MAX_VALUE / ENTRY_SIZE;
+
+    private final ByteBuffer[] segments;
+    private final ByteBuffer index;
+    private final int shift;
+    private final int count;
+
+    private DocumentStore(ByteBuffer[] segments, ByteBuffer index, int shift, int count) {
+        this.segments = segments;
+        this.index = index;
+        this.shift = shift;
+        this.count = count;
+    }
+
+    public static DocumentStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < FOOTER_SIZE)
+                throw new IOException("Not a document store: " + file);
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            while (footer.hasRemaining() && channel.read(footer, size - FOOTER_SIZE + footer.position()) >= 0) {
+                // read fully
+            }
+            // through Buffer, so classes compiled on JDK 9+ without --release 8 still link on Java 8
+            ((Buffer) footer).flip();
+
+            long indexOffset = footer.getLong();
+            int count = footer.getInt();
+            int shift = footer.getInt();
+            if (footer.getInt() != MAGIC || indexOffset + (long) count * ENTRY_SIZE != size - FOOTER_SIZE)
+                throw new IOException("Not a document store: " + file);
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((indexOffset + (1L << shift) - 1) >>> shift)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i << shift;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(1L << shift, indexOffset - position));
+            }
+
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) count * ENTRY_SIZE);
+            return new DocumentStore(segments, index, shift, count);
+        }
+    }
+
+    public static Writer writer(Path file) throws IOException {
+        return new Writer(file, MappedFileExtraction.SEGMENT_SHIFT);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean contains(long id) {
+        return find(id) >= 0;
+    }
+
+    // the document's text as a view over the mapped bytes, null when there is no such document
+    public Utf8CharSequence get(long id) {
+        int entry = find(id);
+        if (entry < 0)
+            return null;
+
+        int base = entry * ENTRY_SIZE;
+        long offset = index.getLong(base + 8);
+        int byteLength = index.getInt(base + 16);
+        int charLength = index.getInt(base + 20);
+
+        if (byteLength == 0)
+            return new Utf8CharSequence(ByteBuffer.allocate(0), 0, 0, 0, true);
+
+        // the writer only stores valid UTF-8, where equal lengths mean ASCII
+        return new Utf8CharSequence(segments[(int) (offset >>> shift)], (int) (offset & ((1L << shift) - 1)),
+                byteLength, charLength, byteLength == charLength);
+    }
+
+    private int find(long id) {
+        int lo = 0, hi = count - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midId = index.getLong(mid * ENTRY_SIZE);
+
+            if (midId < id)
+                lo = mid + 1;
+            else if (midId > id)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Appends documents to a new store file. Ids can be added in any order but only once; the index is written
+     * on close.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final int shift;
+        private long position;
+        private int count;
+        private long[] ids = new long[1024];
+        private long[] offsets = new long[1024];
+        private int[] byteLengths = new int[1024];
+        private int[] charLengths = new int[1024];
+
+        Writer(Path file, int shift) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            this.shift = shift;
+        }
+
+        public Writer add(long id, CharSequence text) throws IOException {
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 1L << shift)
+                throw new IllegalArgumentException("Document " + id + " is larger than a segment");
+            if (count == MAX_DOCUMENTS)
+                throw new IllegalStateException("A store holds at most " + MAX_DOCUMENTS + " documents");
+
+            // start the next segment rather than splitting the document
+            long segmentEnd = (position | ((1L << shift) - 1)) + 1;
+            if (position + bytes.length > segmentEnd) {
+                for (; position < segmentEnd; position++)
+                    out.write(0);
+            }
+
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                byteLengths = Arrays.copyOf(byteLengths, count * 2);
+                charLengths = Arrays.copyOf(charLengths, count * 2);
+            }
+
+            // unpaired surrogates are written as ?, one char each, so the char length stays the same
+            ids[count] = id;
+            offsets[count] = position;
+            byteLengths[count] = bytes.length;
+            charLengths[count] = text.length();
+            count++;
+
+            out.write(bytes);
+            position += bytes.length;
+            return this;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                Integer[] order = new Integer[count];
+                boolean sorted = true;
+                for (int i = 0; i < count; i++) {
+                    order[i] = i;
+                    sorted &= i == 0 || ids[i - 1] <= ids[i];
+                }
+                if (!sorted)
+                    Arrays.sort(order, (a, b) -> Long.compare(ids[a], ids[b]));
+
+                for (int i = 0; i < count; i++) {
+                    int entry = order[i];
+                    if (i > 0 && ids[entry] == ids[order[i - 1]])
+                        throw new IllegalArgumentException("Duplicate document id " + ids[entry]);
+
+                    out.writeLong(ids[entry]);
+                    out.writeLong(offsets[entry]);
+                    out.writeInt(byteLengths[entry]);
+                    out.writeInt(charLengths[entry]);
+                }
+
+                out.writeLong(position);
+                out.writeInt(count);
+                out.writeInt(shift);
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
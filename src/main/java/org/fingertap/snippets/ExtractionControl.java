@@ -0,0 +1,83 @@
+package org.fingertap.snippets;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// cooperative stop signal for a single extraction: a deadline, a shared cancellation flag and work budgets
+final class ExtractionControl {
+    enum Stop {
+        DEADLINE,
+        CANCELLED,
+        MATCH_LIMIT,
+        SNIPPET_LIMIT,
+        SCAN_LIMIT
+    }
+
+    private long deadline;
+    private boolean hasDeadline;
+    private final AtomicBoolean cancelled;
+    private int maxMatches = Integer.MAX_VALUE;
+    private int maxSnippets = Integer.MAX_VALUE;
+    private Stop stopped;
+
+    ExtractionControl(long timeoutNanos, AtomicBoolean cancelled) {
+        this.hasDeadline = timeoutNanos > 0;
+        this.deadline = hasDeadline ? System.nanoTime() + timeoutNanos : 0;
+        this.cancelled = cancelled;
+    }
+
+    // tightens the control with an extractor's own limits, the earlier deadline wins
+    ExtractionControl limit(long timeoutNanos, int maxMatches, int maxSnippets) {
+        if (timeoutNanos > 0) {
+            long limit = System.nanoTime() + timeoutNanos;
+
+            if (!hasDeadline || limit - deadline < 0)
+                deadline = limit;
+            hasDeadline = true;
+        }
+
+        this.maxMatches = Math.min(this.maxMatches, maxMatches);
+        this.maxSnippets = Math.min(this.maxSnippets, maxSnippets);
+        return this;
+    }
+
+    // true when a deadline or a cancellation can stop extraction at any point, not just at a budget
+    boolean isInterruptible() {
+        return hasDeadline || cancelled != null;
+    }
+
+    boolean shouldStop() {
+        if (stopped == null) {
+            if (cancelled != null && cancelled.get())
+                stopped = Stop.CANCELLED;
+            else if (hasDeadline && System.nanoTime() - deadline >= 0)
+                stopped = Stop.DEADLINE;
+        }
+
+        return stopped != null;
+    }
+
+    boolean shouldStop(int matches, int snippets) {
+        if (stopped == null) {
+            if (matches >= maxMatches)
+                stopped = Stop.MATCH_LIMIT;
+            else if (snippets >= maxSnippets)
+                stopped = Stop.SNIPPET_LIMIT;
+        }
+
+        return shouldStop();
+    }
+
+    // matches still allowed before the match budget runs out
+    int remainingMatches(int matches) {
+        return Math.max(maxMatches - matches, 0);
+    }
+
+    void stop(Stop reason) {
+        if (stopped == null)
+            stopped = reason;
+    }
+
+    Stop stopped() {
+        return stopped;
+    }
+}
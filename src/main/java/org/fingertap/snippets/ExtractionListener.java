@@ -0,0 +1,20 @@
+package org.fingertap.snippets;
+
+/**
+ * Optional instrumentation hook, see {@link SnippetExtractor.Builder#listener(ExtractionListener)}. Called once
+ * per document on the extracting thread with the time spent in each stage, so implementations must be cheap
+ * and thread-safe. Without a listener the extractor doesn't read the clock at all.
+ */
+public interface ExtractionListener {
+    enum Stage {
+        SENTENCES,
+        MATCHING,
+        WINDOWING
+    }
+
+    // total nanos spent in stage for one document. SENTENCES is reported whenever the document has sentences,
+    // including ones taken from a SentenceIndex or found for term positions; only ranked extraction skips it
+    void onStage(Stage stage, long nanos);
+
+    void onDocument(int textLength, int sentences, int matches, int snippets, long nanos);
+}
@@ -0,0 +1,328 @@
+package org.fingertap.snippets;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Hand written sentence segmenter for western text, a single forward pass driven by a char class table that
+ * allocates nothing. A sentence ends at . ! ? or an ellipsis followed by whitespace and a char that isn't
+ * lowercase, at a CJK full stop, or at a blank line. Closing quotes and brackets stay with the sentence they
+ * close, as do citations such as [2], [nb 1] or [2]:p.3 right after the terminator. Decimals like 3.14, initials
+ * like J. R. and U.S., and abbreviations from a fixed list like Dr. or Fig. don't end a sentence. Trailing
+ * whitespace belongs to the sentence before it, as with BreakIterator.
+ */
+public final class FastSentenceSegmenter implements SentenceSegmenter {
+    // titles and reference abbreviations that are almost always followed by a name or a number
+    public static final Set<String> ABBREVIATIONS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            "mr", "mrs", "ms", "dr", "prof", "sr", "jr", "st", "mt", "rev", "hon", "fr", "gen", "col", "lt", "capt",
+            "sgt", "gov", "sen", "rep", "pres", "vs", "cf", "al", "approx", "ca", "no", "nos", "fig", "figs", "vol",
+            "pp", "ch", "sec", "ed", "eds", "dept", "univ", "jan", "feb", "mar", "apr", "jun", "jul", "aug", "sep",
+            "sept", "oct", "nov", "dec")));
+
+    private static final byte OTHER = 0;
+    private static final byte SPACE = 1;
+    private static final byte LINE = 2;
+    private static final byte DOT = 3;
+    private static final byte TERMINATOR = 4;
+    private static final byte FULL_STOP = 5;
+    private static final byte PARAGRAPH = 6;
+    private static final byte CLOSE = 7;
+    private static final byte UPPER = 8;
+    private static final byte LOWER = 9;
+
+    private static final byte[] ASCII = new byte[128];
+
+    // longest [...] group read as a citation, e.g. [citation needed]
+    private static final int MAX_CITATION = 24;
+    private static final int MAX_ABBREVIATION = 8;
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            if (c <= ' ')
+                ASCII[c] = SPACE;
+            else if (c >= 'A' && c <= 'Z')
+                ASCII[c] = UPPER;
+            else if (c >= 'a' && c <= 'z')
+                ASCII[c] = LOWER;
+        }
+
+        ASCII['\n'] = LINE;
+        ASCII['.'] = DOT;
+        ASCII['!'] = TERMINATOR;
+        ASCII['?'] = TERMINATOR;
+        ASCII['"'] = CLOSE;
+        ASCII['\''] = CLOSE;
+        ASCII[')'] = CLOSE;
+        ASCII[']'] = CLOSE;
+        ASCII['}'] = CLOSE;
+    }
+
+    private final char[][] abbreviations;
+    private final Set<String> words = new HashSet<>();
+
+    public FastSentenceSegmenter() {
+        this(ABBREVIATIONS);
+    }
+
+    // abbreviations are matched ignoring case, a trailing dot is optional
+    public FastSentenceSegmenter(Collection<String> abbreviations) {
+        int capacity = Integer.highestOneBit(Math.max(abbreviations.size(), 1) * 4 - 1) << 1;
+        this.abbreviations = new char[capacity][];
+
+        for (String abbreviation : abbreviations) {
+            String word = abbreviation.trim().toLowerCase(Locale.ROOT);
+            if (word.endsWith("."))
+                word = word.substring(0, word.length() - 1);
+            if (word.isEmpty() || !words.add(word))
+                continue;
+
+            char[] chars = word.toCharArray();
+            int slot = hash(word, 0, chars.length) & (capacity - 1);
+            while (this.abbreviations[slot] != null && !Arrays.equals(this.abbreviations[slot], chars))
+                slot = (slot + 1) & (capacity - 1);
+
+            this.abbreviations[slot] = chars;
+        }
+    }
+
+    // segmenters with the same abbreviations break text the same way, so their sentence indexes are interchangeable
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FastSentenceSegmenter && words.equals(((FastSentenceSegmenter) o).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return words.hashCode();
+    }
+
+    @Override
+    public void segment(CharSequence text, int start, int end, IntConsumer sentenceEnds) {
+        int sentenceStart = start;
+        int i = start;
+
+        while (i < end) {
+            char c = text.charAt(i);
+            byte type = c < 128 ? ASCII[c] : classOf(c);
+
+            if (type < LINE || type > PARAGRAPH) {
+                i++;
+                continue;
+            }
+
+            int next = type == LINE ? blankLine(text, i, end) : type == PARAGRAPH ? skipSpaces(text, i + 1, end)
+                    : afterTerminator(text, sentenceStart, i, end, type);
+
+            if (next < 0) {
+                i++;
+                continue;
+            }
+
+            if (next == end)
+                break;
+
+            sentenceEnds.accept(next);
+            sentenceStart = next;
+            i = next;
+        }
+
+        if (end > start)
+            sentenceEnds.accept(end);
+    }
+
+    // start of the next sentence when the terminator at i ends one, otherwise -1
+    private int afterTerminator(CharSequence text, int sentenceStart, int i, int end, byte type) {
+        int j = i + 1;
+        boolean singleDot = type == DOT;
+
+        while (j < end) {
+            char c = text.charAt(j);
+            byte next = c < 128 ? ASCII[c] : classOf(c);
+
+            if (next != DOT && next != TERMINATOR && next != FULL_STOP)
+                break;
+
+            singleDot = false;
+            j++;
+        }
+
+        j = skipClosing(text, j, end);
+
+        if (type == FULL_STOP)
+            return skipSpaces(text, j, end);
+
+        // 3.14, e.g.x or a url, the terminator is inside a token
+        if (j < end && !isSpace(text.charAt(j)))
+            return -1;
+
+        int next = skipSpaces(text, j, end);
+        if (next == end)
+            return end;
+
+        char c = text.charAt(next);
+        if (c < 128 ? ASCII[c] == LOWER : Character.isLowerCase(c))
+            return -1;
+
+        if (singleDot && isAbbreviation(text, sentenceStart, i))
+            return -1;
+
+        return next;
+    }
+
+    // closing quotes and brackets, and citations like [2], [nb 1] or [2]:p.3
+    private static int skipClosing(CharSequence text, int j, int end) {
+        while (j < end) {
+            char c = text.charAt(j);
+
+            if ((c < 128 ? ASCII[c] : classOf(c)) == CLOSE) {
+                j++;
+            } else if (c == '[') {
+                int close = j + 1;
+                while (close < end && close - j <= MAX_CITATION && text.charAt(close) != ']'
+                        && text.charAt(close) != '[' && text.charAt(close) != '\n')
+                    close++;
+
+                if (close == end || text.charAt(close) != ']')
+                    return j;
+
+                j = close + 1;
+                if (j < end && text.charAt(j) == ':') {
+                    while (j < end && !isSpace(text.charAt(j)))
+                        j++;
+                }
+            } else {
+                return j;
+            }
+        }
+
+        return j;
+    }
+
+    // a line break followed by an empty line ends the sentence, returns where the next one starts or -1
+    private static int blankLine(CharSequence text, int i, int end) {
+        int j = i + 1;
+
+        while (j < end && isSpace(text.charAt(j))) {
+            if (text.charAt(j) == '\n')
+                return skipSpaces(text, j + 1, end);
+            j++;
+        }
+
+        return -1;
+    }
+
+    private static int skipSpaces(CharSequence text, int j, int end) {
+        while (j < end && isSpace(text.charAt(j)))
+            j++;
+
+        return j;
+    }
+
+    // the word before the dot at end is an initial, a dotted acronym like U.S or e.g, or a known abbreviation
+    private boolean isAbbreviation(CharSequence text, int sentenceStart, int end) {
+        int start = end;
+        while (start > sentenceStart && end - start <= MAX_ABBREVIATION
+                && (Character.isLetter(text.charAt(start - 1)) || text.charAt(start - 1) == '.'))
+            start--;
+
+        if (start == end || end - start > MAX_ABBREVIATION)
+            return false;
+
+        if (end - start == 1)
+            return Character.isUpperCase(text.charAt(start));
+
+        if (isDottedLetters(text, start, end))
+            return true;
+
+        char[][] table = abbreviations;
+        int slot = hash(text, start, end) & (table.length - 1);
+
+        for (char[] candidate = table[slot]; candidate != null; candidate = table[slot]) {
+            if (equalsIgnoreCase(candidate, text, start, end))
+                return true;
+            slot = (slot + 1) & (table.length - 1);
+        }
+
+        return false;
+    }
+
+    // single letters separated by dots: e.g, i.e, U.S, J.R.R
+    private static boolean isDottedLetters(CharSequence text, int start, int end) {
+        if ((end - start) % 2 == 0)
+            return false;
+
+        for (int i = start; i < end; i++) {
+            boolean dot = text.charAt(i) == '.';
+
+            if (dot != ((i - start) % 2 == 1))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(char[] candidate, CharSequence text, int start, int end) {
+        if (candidate.length != end - start)
+            return false;
+
+        for (int i = 0; i < candidate.length; i++) {
+            if (candidate[i] != lower(text.charAt(start + i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + lower(text.charAt(i));
+
+        return hash ^ (hash >>> 16);
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean isSpace(char c) {
+        return c < 128 ? ASCII[c] == SPACE || ASCII[c] == LINE : Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+
+    private static byte classOf(char c) {
+        switch (c) {
+            case '\u2026':
+            case '\u203C':
+            case '\u2047':
+            case '\u2048':
+            case '\u2049':
+                return TERMINATOR;
+            case '\u3002':
+            case '\uFF01':
+            case '\uFF1F':
+            case '\uFF61':
+                return FULL_STOP;
+            case '\u2029':
+                return PARAGRAPH;
+            case '\u2019':
+            case '\u201D':
+            case '\u00BB':
+            case '\u203A':
+            case '\u300D':
+            case '\u300F':
+            case '\uFF09':
+                return CLOSE;
+            default:
+                if (Character.isWhitespace(c) || Character.isSpaceChar(c))
+                    return SPACE;
+
+                return Character.isLowerCase(c) ? LOWER : Character.isUpperCase(c) ? UPPER : OTHER;
+        }
+    }
+}
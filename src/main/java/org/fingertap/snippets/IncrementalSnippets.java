@@ -0,0 +1,332 @@
+package org.fingertap.snippets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Snippets of a document that keeps changing, such as a chat log or a tailed file. The sentence boundaries, merged
+ * sentences and snippet of each sentence are kept between edits; an append or a replaced range re-segments and
+ * rematches only the sentences around the edit, until the boundaries agree with the old ones again, and reports
+ * the snippets that changed. Results equal a fresh extract() of the whole text. Not thread-safe.
+ */
+public final class IncrementalSnippets {
+    /**
+     * Snippets removed and added by one edit, as a splice of the snippet list at index. Removed snippets have the
+     * offsets they had before the edit; snippets after the change keep their text and move by shift chars.
+     */
+    public static final class Change {
+        private final int index;
+        private final List<Snippet> removed;
+        private final List<Snippet> added;
+        private final int shift;
+
+        Change(int index, List<Snippet> removed, List<Snippet> added, int shift) {
+            this.index = index;
+            this.removed = removed;
+            this.added = added;
+            this.shift = shift;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public List<Snippet> getRemoved() {
+            return removed;
+        }
+
+        public List<Snippet> getAdded() {
+            return added;
+        }
+
+        public int getShift() {
+            return shift;
+        }
+
+        public boolean isEmpty() {
+            return removed.isEmpty() && added.isEmpty();
+        }
+    }
+
+    private final SnippetExtractor extractor;
+    private final SnippetExtractor.Scratch scratch = new SnippetExtractor.Scratch();
+    private final StringBuilder text = new StringBuilder();
+
+    // segmenter output over the whole text, and (start, end) pairs of sentences after merging short ones
+    private final IntArray sentenceEnds = new IntArray();
+    private final IntArray sentences = new IntArray();
+
+    // per merged sentence: its snippet or null, and where the sentence started when the snippet was made
+    private final List<Snippet> snippets = new ArrayList<>();
+    private final IntArray snippetBases = new IntArray();
+    // non-null entries of snippets
+    private int snippetCount;
+
+    private final IntArray fresh = new IntArray();
+    private final IntConsumer addFresh = fresh::add;
+    private final IntArray merged = new IntArray();
+    // first boundary past the last edit from which the sentence boundaries are the old ones again
+    private int resync;
+
+    IncrementalSnippets(SnippetExtractor extractor) {
+        this.extractor = extractor;
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    public Change append(CharSequence more) {
+        return replace(text.length(), text.length(), more);
+    }
+
+    // replaces text[start, end) with replacement
+    public Change replace(int start, int end, CharSequence replacement) {
+        if (start < 0 || end > text.length() || start > end)
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + text.length());
+
+        text.replace(start, end, replacement.toString());
+        int delta = replacement.length() - (end - start);
+
+        return remerge(resegment(start, end, delta), delta);
+    }
+
+    // the current snippets in document order
+    public List<Snippet> getSnippets() {
+        List<Snippet> current = new ArrayList<>();
+
+        for (int i = 0; i < snippets.size(); i++) {
+            if (snippets.get(i) != null)
+                current.add(snippetAt(i));
+        }
+
+        return current;
+    }
+
+    /**
+     * Segments from the sentence before the edit up to some sentences past it, widening the range until a fresh
+     * boundary past the edit is also an old one, and splices the fresh boundaries in. Returns where segmenting
+     * started.
+     */
+    private int resegment(int start, int end, int delta) {
+        int n = sentenceEnds.size();
+        int first = firstAtLeast(sentenceEnds, 0, n, start);
+
+        // the sentence before the edit, since where a sentence ends depends on what follows it
+        int from = Math.max(first - 1, 0);
+        int segmentStart = from == 0 ? 0 : sentenceEnds.get(from - 1);
+        int after = firstAtLeast(sentenceEnds, first, n, end + 1);
+        int editEnd = end + delta;
+
+        for (int reach = 1; ; reach *= 2) {
+            int limit = after + reach < n ? sentenceEnds.get(after + reach) + delta : text.length();
+
+            fresh.clear();
+            extractor.getSegmenter().segment(text, segmentStart, limit, addFresh);
+
+            if (limit == text.length()) {
+                sentenceEnds.replace(from, n, fresh.array(), 0, fresh.size());
+                resync = text.length();
+                return segmentStart;
+            }
+
+            for (int i = 0; i < fresh.size() && fresh.get(i) < limit; i++) {
+                int boundary = fresh.get(i);
+                if (boundary < editEnd)
+                    continue;
+
+                int old = firstAtLeast(sentenceEnds, after, n, boundary - delta);
+                if (old < n && sentenceEnds.get(old) == boundary - delta) {
+                    sentenceEnds.replace(from, old + 1, fresh.array(), 0, i + 1);
+                    sentenceEnds.shift(from + i + 1, delta);
+                    resync = boundary;
+                    return segmentStart;
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges short sentences again from the merged sentence before segmentStart, the same way
+     * SnippetExtractor.breakTextIntoSentences does, until a merged sentence past the edit ends where an old one did,
+     * then snippets the new merged sentences.
+     */
+    private Change remerge(int segmentStart, int delta) {
+        int count = sentences.size() / 2;
+        int group = Math.max(lastStartAtMost(segmentStart) - 1, 0);
+        int position = group == 0 ? 0 : sentences.get(2 * group);
+
+        int next = position == 0 ? 0 : firstAtLeast(sentenceEnds, 0, sentenceEnds.size(), position) + 1;
+        int oldEnd = count;
+
+        merged.clear();
+        int start = position;
+        while (next < sentenceEnds.size()) {
+            int end = sentenceEnds.get(next++);
+
+            if (SnippetExtractor.isBlank(text, start, end)) {
+                start = end;
+                continue;
+            }
+
+            int sentenceStart = start;
+            if (end - start < extractor.getMinSnippetLength()) {
+                if (next < sentenceEnds.size()) {
+                    end = sentenceEnds.get(next++);
+                } else if (merged.size() > 0) {
+                    sentenceStart = merged.get(merged.size() - 2);
+                    merged.truncate(merged.size() - 2);
+                } else if (group > 0) {
+                    group--;
+                    sentenceStart = sentences.get(2 * group);
+                }
+            }
+
+            merged.add(sentenceStart);
+            merged.add(end);
+            start = end;
+
+            // from here on the boundaries and the text are the old ones, so are the merged sentences
+            if (end >= resync && end < text.length()) {
+                int old = firstOddAtLeast(end - delta);
+                if (old < count && sentences.get(2 * old + 1) == end - delta) {
+                    oldEnd = old + 1;
+                    break;
+                }
+            }
+        }
+
+        return splice(group, oldEnd, delta);
+    }
+
+    // replaces merged sentences [group, oldEnd) with the merged ones, snippeting each of them
+    private Change splice(int group, int oldEnd, int delta) {
+        List<Snippet> removed = new ArrayList<>();
+        for (int i = group; i < oldEnd; i++) {
+            if (snippets.get(i) != null)
+                removed.add(snippetAt(i));
+        }
+
+        // snippets before the edit, counted from the nearer end so an append only looks at the tail
+        int index;
+        if (group <= snippets.size() - oldEnd) {
+            index = 0;
+            for (int i = 0; i < group; i++) {
+                if (snippets.get(i) != null)
+                    index++;
+            }
+        } else {
+            index = snippetCount - removed.size();
+            for (int i = oldEnd; i < snippets.size(); i++) {
+                if (snippets.get(i) != null)
+                    index--;
+            }
+        }
+
+        List<Snippet> added = new ArrayList<>();
+        List<Snippet> replacements = new ArrayList<>(merged.size() / 2);
+        int[] bases = new int[merged.size() / 2];
+        for (int i = 0; i < merged.size(); i += 2) {
+            Snippet snippet = extractor.snippetFor(text, merged.get(i), merged.get(i + 1), 0, null, Integer.MAX_VALUE, scratch);
+
+            replacements.add(snippet);
+            bases[i / 2] = merged.get(i);
+            if (snippet != null)
+                added.add(snippet);
+        }
+
+        sentences.replace(2 * group, 2 * oldEnd, merged.array(), 0, merged.size());
+        sentences.shift(2 * group + merged.size(), delta);
+
+        List<Snippet> stale = snippets.subList(group, oldEnd);
+        stale.clear();
+        stale.addAll(replacements);
+        snippetBases.replace(group, oldEnd, bases, 0, bases.length);
+        snippetCount += added.size() - removed.size();
+
+        // neighbouring sentences were only snippeted again for context, leave out the ones that didn't change
+        int same = 0;
+        while (same < removed.size() && same < added.size() && unchanged(removed.get(same), added.get(same), 0))
+            same++;
+        int sameAfter = 0;
+        while (sameAfter < removed.size() - same && sameAfter < added.size() - same
+                && unchanged(removed.get(removed.size() - 1 - sameAfter), added.get(added.size() - 1 - sameAfter), delta))
+            sameAfter++;
+
+        return new Change(index + same,
+                Collections.unmodifiableList(new ArrayList<>(removed.subList(same, removed.size() - sameAfter))),
+                Collections.unmodifiableList(new ArrayList<>(added.subList(same, added.size() - sameAfter))), delta);
+    }
+
+    private static boolean unchanged(Snippet before, Snippet after, int shift) {
+        return before.equals(after) && before.getStartOffset() + shift == after.getStartOffset()
+                && before.getEndOffset() + shift == after.getEndOffset();
+    }
+
+    // the snippet of merged sentence i, moved to where the sentence is now
+    private Snippet snippetAt(int i) {
+        Snippet snippet = snippets.get(i);
+        int shift = sentences.get(2 * i) - snippetBases.get(i);
+
+        if (shift == 0)
+            return snippet;
+
+        List<MatchedTerm> terms = new ArrayList<>(snippet.getMatchedTerms().size());
+        for (MatchedTerm term : snippet.getMatchedTerms())
+            terms.add(new MatchedTerm(term.getText(), term.getStartIndex(), term.getSourceOffset() + shift, -1));
+
+        return new Snippet(snippet.getText(), terms, snippet.getStartOffset() + shift, snippet.getEndOffset() + shift);
+    }
+
+    // index of the last merged sentence starting at or before position, 0 when there is none
+    private int lastStartAtMost(int position) {
+        int lo = 0, hi = sentences.size() / 2 - 1, found = 0;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (sentences.get(2 * mid) <= position) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        return found;
+    }
+
+    // index of the first merged sentence ending at or after position
+    private int firstOddAtLeast(int position) {
+        int lo = 0, hi = sentences.size() / 2;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (sentences.get(2 * mid + 1) < position)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return lo;
+    }
+
+    // index of the first value in values[from, to) that is at least position, to when there is none
+    private static int firstAtLeast(IntArray values, int from, int to, int position) {
+        int lo = from, hi = to;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (values.get(mid) < position)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return lo;
+    }
+}
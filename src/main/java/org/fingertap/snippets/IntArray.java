@@ -0,0 +1,66 @@
+package org.fingertap.snippets;
+
+import java.util.Arrays;
+
+// minimal growable int list used for offsets in scratch buffers
+final class IntArray {
+    private int[] values;
+    private int size;
+
+    IntArray() {
+        this(16);
+    }
+
+    IntArray(int capacity) {
+        this.values = new int[Math.max(capacity, 1)];
+    }
+
+    void add(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size * 2);
+
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void truncate(int newSize) {
+        size = newSize;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    // replaces values[from, to) with count values of source starting at offset
+    void replace(int from, int to, int[] source, int offset, int count) {
+        int newSize = size - (to - from) + count;
+        if (newSize > values.length)
+            values = Arrays.copyOf(values, Math.max(newSize, values.length * 2));
+
+        System.arraycopy(values, to, values, from + count, size - to);
+        System.arraycopy(source, offset, values, from, count);
+        size = newSize;
+    }
+
+    // adds delta to every value from index on
+    void shift(int from, int delta) {
+        for (int i = from; i < size; i++)
+            values[i] += delta;
+    }
+
+    // backing array, only the first size() values are valid and it is replaced when the list grows
+    int[] array() {
+        return values;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,124 @@
+package org.fingertap.snippets;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snippet extraction straight over a memory mapped file. The bytes are decoded in order, UTF-8 inline, into the
+ * carry-over buffer of a StreamingExtraction, together with the byte offset each char starts at, so sentences
+ * are broken and merged exactly as for the text in memory and matched terms report both offsets.
+ */
+final class MappedFileExtraction {
+    static final int SEGMENT_SHIFT = 30;
+
+    private final SnippetExtractor extractor;
+    private final boolean singleByte;
+
+    private final MappedByteBuffer[] segments;
+    private final int shift;
+    private final long mask;
+    private final long size;
+
+    private long position;
+    private int decodedLength;
+    // the second half of a surrogate pair that didn't fit in the last read
+    private char low;
+    private long lowPosition;
+
+    MappedFileExtraction(SnippetExtractor extractor, FileChannel channel, boolean singleByte, int segmentShift)
+            throws IOException {
+        this.extractor = extractor;
+        this.singleByte = singleByte;
+        this.size = channel.size();
+        this.shift = segmentShift;
+        this.mask = (1L << segmentShift) - 1;
+
+        this.segments = new MappedByteBuffer[(int) ((size + mask) >>> shift)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = (long) i << shift;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(1L << shift, size - position));
+        }
+    }
+
+    List<Snippet> extract() throws IOException {
+        List<Snippet> snippets = new ArrayList<>();
+
+        if (extractor.getMatcher().size() == 0 || size == 0)
+            return snippets;
+
+        StreamingExtraction extraction = extractor.streaming(this);
+        while (extraction.advance(snippets::add)) {
+            // keep decoding
+        }
+
+        return snippets;
+    }
+
+    // decodes up to length chars into chars[offset...] and their byte offsets into byteOffsets, -1 at the end
+    int read(char[] chars, long[] byteOffsets, int offset, int length) {
+        int n = 0;
+
+        if (low != 0 && length > 0) {
+            chars[offset] = low;
+            byteOffsets[offset] = lowPosition;
+            low = 0;
+            n++;
+        }
+
+        if (n == 0 && position >= size)
+            return -1;
+
+        while (n < length && position < size) {
+            long start = position;
+            int codePoint = codePointAt(position);
+            position += decodedLength;
+
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[offset + n] = (char) codePoint;
+                byteOffsets[offset + n++] = start;
+                continue;
+            }
+
+            chars[offset + n] = Character.highSurrogate(codePoint);
+            byteOffsets[offset + n++] = start;
+
+            if (n < length) {
+                chars[offset + n] = Character.lowSurrogate(codePoint);
+                byteOffsets[offset + n++] = start;
+            } else {
+                low = Character.lowSurrogate(codePoint);
+                lowPosition = start;
+            }
+        }
+
+        return n;
+    }
+
+    // decodes the code point starting at position and leaves its byte length in decodedLength
+    private int codePointAt(long position) {
+        int b0 = get(position);
+        decodedLength = 1;
+
+        if (b0 < 0x80 || singleByte)
+            return b0;
+
+        int length = Utf8.sequenceLength(b0);
+        if (length == 0 || position + length > size)
+            return Utf8.REPLACEMENT;
+
+        int codePoint = Utf8.decode(b0, get(position + 1), length > 2 ? get(position + 2) : 0,
+                length > 3 ? get(position + 3) : 0, length);
+        if (codePoint < 0)
+            return Utf8.REPLACEMENT;
+
+        decodedLength = length;
+        return codePoint;
+    }
+
+    private int get(long position) {
+        return segments[(int) (position >>> shift)].get((int) (position & mask)) & 0xFF;
+    }
+}
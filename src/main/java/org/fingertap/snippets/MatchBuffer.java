@@ -0,0 +1,122 @@
+package org.fingertap.snippets;
+
+import java.util.Arrays;
+
+// growable parallel int arrays of (termId, start, end), reused between extractions on the same thread
+final class MatchBuffer implements TermMatcher.MatchListener {
+    private int[] termIds = new int[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private long[] byteStarts = new long[16];
+    private int size;
+    private int limit = Integer.MAX_VALUE;
+
+    @Override
+    public void onMatch(int termId, int start, int end) {
+        onMatch(termId, start, end, -1);
+    }
+
+    void onMatch(int termId, int start, int end, long byteStart) {
+        if (size == limit)
+            return;
+
+        if (size == starts.length) {
+            termIds = Arrays.copyOf(termIds, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            byteStarts = Arrays.copyOf(byteStarts, size * 2);
+        }
+
+        termIds[size] = termId;
+        starts[size] = start;
+        ends[size] = end;
+        byteStarts[size] = byteStart;
+        size++;
+    }
+
+    void clear() {
+        clear(Integer.MAX_VALUE);
+    }
+
+    // matches past limit are dropped until the next clear
+    void clear(int limit) {
+        this.size = 0;
+        this.limit = limit;
+    }
+
+    boolean isFull() {
+        return size == limit;
+    }
+
+    void truncate(int newSize) {
+        size = Math.min(size, newSize);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int termId(int i) {
+        return termIds[i];
+    }
+
+    int start(int i) {
+        return starts[i];
+    }
+
+    int end(int i) {
+        return ends[i];
+    }
+
+    long byteStart(int i) {
+        return byteStarts[i];
+    }
+
+    // sets each match's byte offset from the byte offset of every char in the text
+    void byteStarts(long[] byteOffsets) {
+        for (int i = 0; i < size; i++)
+            byteStarts[i] = byteOffsets[starts[i]];
+    }
+
+    // matches arrive ordered by end offset, which is nearly sorted by start, so insertion sort is enough
+    void sort() {
+        for (int i = 1; i < size; i++) {
+            int termId = termIds[i], start = starts[i], end = ends[i];
+            long byteStart = byteStarts[i];
+            int j = i - 1;
+
+            while (j >= 0 && (starts[j] > start || (starts[j] == start && ends[j] < end))) {
+                termIds[j + 1] = termIds[j];
+                starts[j + 1] = starts[j];
+                ends[j + 1] = ends[j];
+                byteStarts[j + 1] = byteStarts[j];
+                j--;
+            }
+
+            termIds[j + 1] = termId;
+            starts[j + 1] = start;
+            ends[j + 1] = end;
+            byteStarts[j + 1] = byteStart;
+        }
+    }
+
+    // drops matches lying inside an earlier, longer match of another term; needs sorted matches
+    void removeCovered() {
+        int kept = 0;
+        int coveredTo = -1;
+
+        for (int i = 0; i < size; i++) {
+            if (ends[i] <= coveredTo)
+                continue;
+
+            termIds[kept] = termIds[i];
+            starts[kept] = starts[i];
+            ends[kept] = ends[i];
+            byteStarts[kept] = byteStarts[i];
+            kept++;
+            coveredTo = ends[i];
+        }
+
+        size = kept;
+    }
+}
@@ -4,11 +4,19 @@ public class MatchedTerm {
     private final String text;
     private final int startIndex;
     private final int length;
+    private final long sourceOffset;
+    private final long byteOffset;
 
     public MatchedTerm(String text, int startIndex) {
+        this(text, startIndex, -1, -1);
+    }
+
+    public MatchedTerm(String text, int startIndex, long sourceOffset, long byteOffset) {
         this.text = text.trim();
         this.startIndex = startIndex;
         this.length = text.length();
+        this.sourceOffset = sourceOffset;
+        this.byteOffset = byteOffset;
     }
 
     public String getText() {
@@ -23,6 +31,16 @@ public class MatchedTerm {
         return length;
     }
 
+    // char offset of the match in the source document, -1 if unknown
+    public long getSourceOffset() {
+        return sourceOffset;
+    }
+
+    // byte offset of the match in the source file, -1 when the source was not read as bytes
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,80 @@
+package org.fingertap.snippets;
+
+/**
+ * Precomputed sentence boundaries of one document, with short sentences already merged the way extraction
+ * merges them. Build it once per document and pass it to {@link SnippetExtractor#extract(CharSequence, SentenceIndex)}
+ * so repeated queries against the same text only run term matching. Instances are immutable.
+ */
+public final class SentenceIndex {
+    private final int[] boundaries;
+    private final int textLength;
+    private final int min_snippet_length;
+    private final SentenceSegmenter segmenter;
+
+    private SentenceIndex(int[] boundaries, int textLength, int min_snippet_length, SentenceSegmenter segmenter) {
+        this.boundaries = boundaries;
+        this.textLength = textLength;
+        this.min_snippet_length = min_snippet_length;
+        this.segmenter = segmenter;
+    }
+
+    public static SentenceIndex build(CharSequence text, SnippetExtractor extractor) {
+        SnippetExtractor.Scratch scratch = SnippetExtractor.scratch();
+        extractor.breakTextIntoSentences(text, scratch);
+
+        return new SentenceIndex(scratch.sentences.toArray(), text.length(), extractor.getMinSnippetLength(),
+                extractor.getSegmenter());
+    }
+
+    public int size() {
+        return boundaries.length / 2;
+    }
+
+    public int getStart(int sentence) {
+        return boundaries[2 * sentence];
+    }
+
+    public int getEnd(int sentence) {
+        return boundaries[2 * sentence + 1];
+    }
+
+    public int getTextLength() {
+        return textLength;
+    }
+
+    public int getMinSnippetLength() {
+        return min_snippet_length;
+    }
+
+    // true when the extractor breaks and merges sentences as this index was built; the segmenter follows the locale
+    boolean isFor(SnippetExtractor extractor) {
+        return min_snippet_length == extractor.getMinSnippetLength() && segmenter.equals(extractor.getSegmenter());
+    }
+
+    // approximate retained size in bytes, used as the weight when caching
+    public long weight() {
+        return 32 + 4L * boundaries.length;
+    }
+
+    // index of the sentence holding offset, -1 if it falls between sentences
+    int find(int offset) {
+        int lo = 0, hi = size() - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (boundaries[2 * mid + 1] <= offset)
+                lo = mid + 1;
+            else if (boundaries[2 * mid] > offset)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+
+        return -1;
+    }
+
+    int[] boundaries() {
+        return boundaries;
+    }
+}
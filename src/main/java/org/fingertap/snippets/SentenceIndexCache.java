@@ -0,0 +1,105 @@
+package org.fingertap.snippets;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of sentence indexes for hot documents, keyed by document id and version. Entries are evicted
+ * least recently used first once their combined weight passes maxWeight. A lookup with a newer version replaces
+ * the stale entry. Thread-safe; indexes are built outside the lock.
+ */
+public final class SentenceIndexCache {
+    private final long maxWeight;
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+
+    private static final class Entry {
+        final long version;
+        final SentenceIndex index;
+
+        Entry(long version, SentenceIndex index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+
+    public SentenceIndexCache(long maxWeight) {
+        if (maxWeight < 1)
+            throw new IllegalArgumentException("maxWeight must be positive");
+
+        this.maxWeight = maxWeight;
+    }
+
+    // returns the cached index for this version of the document, building it from text on a miss
+    public SentenceIndex get(Object documentId, long version, CharSequence text, SnippetExtractor extractor) {
+        synchronized (this) {
+            Entry entry = entries.get(documentId);
+
+            if (entry != null && entry.version == version && entry.index.isFor(extractor)
+                    && entry.index.getTextLength() == text.length()) {
+                hits++;
+                return entry.index;
+            }
+            misses++;
+        }
+
+        SentenceIndex index = SentenceIndex.build(text, extractor);
+        put(documentId, version, index);
+        return index;
+    }
+
+    public synchronized void put(Object documentId, long version, SentenceIndex index) {
+        Entry previous = entries.get(documentId);
+
+        // never let a slow builder overwrite a newer version
+        if (previous != null && previous.version > version)
+            return;
+
+        if (previous != null)
+            weight -= previous.index.weight();
+
+        entries.put(documentId, new Entry(version, index));
+        weight += index.weight();
+
+        Iterator<Map.Entry<Object, Entry>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            Map.Entry<Object, Entry> next = eldest.next();
+            if (next.getKey().equals(documentId) && entries.size() == 1)
+                break;
+
+            weight -= next.getValue().index.weight();
+            eldest.remove();
+        }
+    }
+
+    public synchronized void invalidate(Object documentId) {
+        Entry entry = entries.remove(documentId);
+
+        if (entry != null)
+            weight -= entry.index.weight();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+}
@@ -0,0 +1,13 @@
+package org.fingertap.snippets;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Splits text into sentences, see {@link SnippetExtractor.Builder#segmenter(SentenceSegmenter)}. Implementations
+ * are shared by every thread using the extractor, so they must be thread-safe. Short sentences are merged by the
+ * extractor afterwards, segmenters only report where sentences end.
+ */
+public interface SentenceSegmenter {
+    // reports the end offset of each sentence in text[start, end) in increasing order, the last one being end
+    void segment(CharSequence text, int start, int end, IntConsumer sentenceEnds);
+}
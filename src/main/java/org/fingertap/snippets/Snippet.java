@@ -5,10 +5,18 @@ import java.util.List;
 public class Snippet {
     private final String text;
     private final List<MatchedTerm> matchedTerms;
+    private final long startOffset;
+    private final long endOffset;
 
     public Snippet(String text, List<MatchedTerm> matchedTerms) {
+        this(text, matchedTerms, -1, -1);
+    }
+
+    public Snippet(String text, List<MatchedTerm> matchedTerms, long startOffset, long endOffset) {
         this.text = text.trim();
         this.matchedTerms = matchedTerms;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
     }
 
     public String getText() {
@@ -19,6 +27,16 @@ public class Snippet {
         return matchedTerms;
     }
 
+    // char offset in the source document where the snippet text (excluding ellipses) starts, -1 if unknown
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    // char offset in the source document where the snippet text (excluding ellipses) ends, -1 if unknown
+    public long getEndOffset() {
+        return endOffset;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
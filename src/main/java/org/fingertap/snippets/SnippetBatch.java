@@ -0,0 +1,243 @@
+package org.fingertap.snippets;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts snippets for many documents against one query in parallel. At most maxInFlight documents are
+ * processed at once, each one on any executor (a ForkJoinPool, a fixed pool or a virtual thread per task
+ * executor). A document that runs past its timeout returns the snippets found so far with status TIMED_OUT.
+ */
+public final class SnippetBatch {
+    public enum Status {
+        COMPLETED,
+        TIMED_OUT,
+        CANCELLED,
+        FAILED
+    }
+
+    public static final class Result {
+        private final int index;
+        private final Status status;
+        private final List<Snippet> snippets;
+        private final Throwable error;
+        private final boolean truncated;
+
+        Result(int index, Status status, List<Snippet> snippets, Throwable error) {
+            this(index, status, snippets, error, status == Status.TIMED_OUT || status == Status.CANCELLED);
+        }
+
+        Result(int index, Status status, List<Snippet> snippets, Throwable error, boolean truncated) {
+            this.index = index;
+            this.status = status;
+            this.snippets = snippets;
+            this.error = error;
+            this.truncated = truncated;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public List<Snippet> getSnippets() {
+            return snippets;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        // true when the snippets are partial, because of a timeout, cancellation or one of the extractor's limits
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public String toString() {
+            return "\nResult{" +
+                    "index=" + index +
+                    ", status=" + status +
+                    ", snippets=" + snippets.size() +
+                    '}';
+        }
+    }
+
+    public static final class Job {
+        private final Result[] results;
+        private final CountDownLatch done;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private Job(int documents) {
+            this.results = new Result[documents];
+            this.done = new CountDownLatch(documents);
+        }
+
+        // documents not yet finished stop at their next sentence and report CANCELLED
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        // results in the same order as the submitted documents
+        public List<Result> get() throws InterruptedException {
+            done.await();
+            return Collections.unmodifiableList(Arrays.asList(results));
+        }
+
+        public List<Result> get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            if (!done.await(timeout, unit))
+                throw new TimeoutException();
+
+            return Collections.unmodifiableList(Arrays.asList(results));
+        }
+
+        private void complete(int index, Result result) {
+            results[index] = result;
+            done.countDown();
+        }
+    }
+
+    private final SnippetExtractor extractor;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final long timeoutNanos;
+
+    private SnippetBatch(Builder builder) {
+        if (builder.extractor == null)
+            throw new IllegalArgumentException("extractor is required");
+
+        this.extractor = builder.extractor;
+        this.executor = builder.executor != null ? builder.executor : ForkJoinPool.commonPool();
+        this.maxInFlight = builder.maxInFlight != null ? builder.maxInFlight : Runtime.getRuntime().availableProcessors();
+        this.timeoutNanos = builder.timeoutNanos;
+    }
+
+    public static Builder builder(SnippetExtractor extractor) {
+        return new Builder(extractor);
+    }
+
+    // blocks until every document is done; interrupting the caller cancels the remaining documents
+    public List<Result> extract(List<? extends CharSequence> documents) throws InterruptedException {
+        Job job = submit(documents);
+
+        try {
+            return job.get();
+        } catch (InterruptedException e) {
+            job.cancel();
+            throw e;
+        }
+    }
+
+    public Job submit(List<? extends CharSequence> documents) {
+        Job job = new Job(documents.size());
+        AtomicInteger next = new AtomicInteger();
+
+        // each lane pulls the next document when it finishes one, which bounds the documents in flight
+        int lanes = Math.min(maxInFlight, documents.size());
+        for (int lane = 0; lane < lanes; lane++) {
+            try {
+                executor.execute(() -> drain(documents, next, job));
+            } catch (RejectedExecutionException e) {
+                if (lane == 0)
+                    throw e;
+                break;
+            }
+        }
+
+        return job;
+    }
+
+    // an Error fails only its own document; the lane keeps draining and rethrows it once nothing is left
+    private void drain(List<? extends CharSequence> documents, AtomicInteger next, Job job) {
+        Error failure = null;
+        int index;
+
+        while ((index = next.getAndIncrement()) < documents.size()) {
+            try {
+                job.complete(index, process(index, documents.get(index), job));
+            } catch (Error e) {
+                job.complete(index, new Result(index, Status.FAILED, Collections.<Snippet>emptyList(), e));
+
+                if (failure == null)
+                    failure = e;
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private Result process(int index, CharSequence document, Job job) {
+        if (job.isCancelled())
+            return new Result(index, Status.CANCELLED, Collections.<Snippet>emptyList(), null);
+
+        ExtractionControl control = new ExtractionControl(timeoutNanos, job.cancelled);
+
+        try {
+            List<Snippet> snippets = extractor.extract(document, control);
+
+            if (control.stopped() == ExtractionControl.Stop.DEADLINE)
+                return new Result(index, Status.TIMED_OUT, snippets, null);
+            if (control.stopped() == ExtractionControl.Stop.CANCELLED)
+                return new Result(index, Status.CANCELLED, snippets, null);
+
+            return new Result(index, Status.COMPLETED, snippets, null, control.stopped() != null);
+        } catch (RuntimeException e) {
+            return new Result(index, Status.FAILED, Collections.<Snippet>emptyList(), e);
+        }
+    }
+
+    public static final class Builder {
+        private final SnippetExtractor extractor;
+        private Executor executor;
+        private Integer maxInFlight;
+        private long timeoutNanos;
+
+        private Builder(SnippetExtractor extractor) {
+            this.extractor = extractor;
+        }
+
+        // defaults to ForkJoinPool.commonPool(); on newer JDKs Executors.newVirtualThreadPerTaskExecutor() works too
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder maxInFlight(Integer maxInFlight) {
+            if (maxInFlight != null && maxInFlight < 1)
+                throw new IllegalArgumentException("maxInFlight must be positive");
+
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder timeout(long timeout, TimeUnit unit) {
+            this.timeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        public SnippetBatch build() {
+            return new SnippetBatch(this);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.fingertap.snippets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact, reusable extraction result holding offsets only. Each snippet is a [start, end) range of the source
+ * text plus its ellipsis flags; its matches are a contiguous run of the packed match arrays, giving the source
+ * offset, length and term id of each one. Pass the same buffer to every extraction on a thread to avoid
+ * allocating per document. Not thread-safe.
+ */
+public final class SnippetBuffer {
+    private static final byte LEADING = 1;
+    private static final byte TRAILING = 2;
+
+    private int size;
+    private int[] starts;
+    private int[] ends;
+    private byte[] flags;
+    private int[] firstMatches;
+
+    private int matchCount;
+    private int[] matchStarts;
+    private int[] matchLengths;
+    private int[] termIds;
+
+    private boolean truncated;
+    private boolean readOnly;
+
+    public SnippetBuffer() {
+        this(16, 16);
+    }
+
+    public SnippetBuffer(int snippetCapacity, int matchCapacity) {
+        snippetCapacity = Math.max(snippetCapacity, 1);
+        matchCapacity = Math.max(matchCapacity, 1);
+
+        this.starts = new int[snippetCapacity];
+        this.ends = new int[snippetCapacity];
+        this.flags = new byte[snippetCapacity];
+        this.firstMatches = new int[snippetCapacity + 1];
+        this.matchStarts = new int[matchCapacity];
+        this.matchLengths = new int[matchCapacity];
+        this.termIds = new int[matchCapacity];
+    }
+
+    public void clear() {
+        if (readOnly)
+            throw new IllegalStateException("The offsets of a Snippets result are read-only and can't be reused");
+
+        size = 0;
+        matchCount = 0;
+        truncated = false;
+    }
+
+    // true when a limit or deadline stopped extraction early, more snippets may exist past the last one
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int snippet) {
+        return starts[snippet];
+    }
+
+    public int getEnd(int snippet) {
+        return ends[snippet];
+    }
+
+    public boolean hasLeadingEllipsis(int snippet) {
+        return (flags[snippet] & LEADING) != 0;
+    }
+
+    public boolean hasTrailingEllipsis(int snippet) {
+        return (flags[snippet] & TRAILING) != 0;
+    }
+
+    // index of the snippet's first match in the match arrays, its matches run up to getFirstMatch(snippet + 1)
+    public int getFirstMatch(int snippet) {
+        return firstMatches[snippet];
+    }
+
+    public int getMatchCount(int snippet) {
+        return firstMatches[snippet + 1] - firstMatches[snippet];
+    }
+
+    public int getTotalMatchCount() {
+        return matchCount;
+    }
+
+    // offset of the match in the source text
+    public int getMatchStart(int match) {
+        return matchStarts[match];
+    }
+
+    public int getMatchLength(int match) {
+        return matchLengths[match];
+    }
+
+    // id of the matched term in the extractor's TermMatcher
+    public int getTermId(int match) {
+        return termIds[match];
+    }
+
+    // builds the regular snippet objects; text must be the same text the buffer was extracted from
+    public List<Snippet> toSnippets(CharSequence text) {
+        List<Snippet> snippets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            snippets.add(toSnippet(text, i));
+
+        return snippets;
+    }
+
+    public Snippet toSnippet(CharSequence text, int snippet) {
+        int start = starts[snippet];
+        String snippetText = SnippetWindow.render(text, start, ends[snippet], hasLeadingEllipsis(snippet),
+                hasTrailingEllipsis(snippet));
+        int prefix = hasLeadingEllipsis(snippet) ? SnippetWindow.ELLIPSIS.length() + 1 : 0;
+
+        List<MatchedTerm> matchedTerms = new ArrayList<>(getMatchCount(snippet));
+        for (int m = firstMatches[snippet]; m < firstMatches[snippet + 1]; m++) {
+            int offset = matchStarts[m] - start + prefix;
+            matchedTerms.add(new MatchedTerm(snippetText.substring(offset, offset + matchLengths[m]), offset,
+                    matchStarts[m], -1));
+        }
+
+        return new Snippet(snippetText, matchedTerms, start, ends[snippet]);
+    }
+
+    // approximate retained size in bytes, used as the weight when caching
+    public long weight() {
+        return 48 + 13L * starts.length + 4L * firstMatches.length + 12L * matchStarts.length;
+    }
+
+    // trimmed copy that refuses to be cleared, for results handed to several callers
+    SnippetBuffer sharedCopy() {
+        SnippetBuffer copy = new SnippetBuffer(size, matchCount);
+
+        System.arraycopy(starts, 0, copy.starts, 0, size);
+        System.arraycopy(ends, 0, copy.ends, 0, size);
+        System.arraycopy(flags, 0, copy.flags, 0, size);
+        System.arraycopy(firstMatches, 0, copy.firstMatches, 0, size + 1);
+        System.arraycopy(matchStarts, 0, copy.matchStarts, 0, matchCount);
+        System.arraycopy(matchLengths, 0, copy.matchLengths, 0, matchCount);
+        System.arraycopy(termIds, 0, copy.termIds, 0, matchCount);
+        copy.size = size;
+        copy.matchCount = matchCount;
+        copy.truncated = truncated;
+        copy.readOnly = true;
+
+        return copy;
+    }
+
+    // refuses to be cleared from now on, for results that wrap this buffer without copying
+    SnippetBuffer readOnly() {
+        readOnly = true;
+        return this;
+    }
+
+    void truncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    void addSnippet(int start, int end, boolean leadingEllipsis, boolean trailingEllipsis) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            flags = Arrays.copyOf(flags, size * 2);
+            firstMatches = Arrays.copyOf(firstMatches, size * 2 + 1);
+        }
+
+        starts[size] = start;
+        ends[size] = end;
+        flags[size] = (byte) ((leadingEllipsis ? LEADING : 0) | (trailingEllipsis ? TRAILING : 0));
+        firstMatches[size] = matchCount;
+        size++;
+        firstMatches[size] = matchCount;
+    }
+
+    // adds a match to the last snippet
+    void addMatch(int start, int length, int termId) {
+        if (matchCount == matchStarts.length) {
+            matchStarts = Arrays.copyOf(matchStarts, matchCount * 2);
+            matchLengths = Arrays.copyOf(matchLengths, matchCount * 2);
+            termIds = Arrays.copyOf(termIds, matchCount * 2);
+        }
+
+        matchStarts[matchCount] = start;
+        matchLengths[matchCount] = length;
+        termIds[matchCount] = termId;
+        matchCount++;
+        firstMatches[size] = matchCount;
+    }
+}
@@ -0,0 +1,200 @@
+package org.fingertap.snippets;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Bounded cache of extraction results for popular queries over hot documents. Results are keyed by a 64-bit hash
+ * and the length of the text, plus the extractor's compiled query and settings, so equal extractors built per
+ * request share entries. Entries are evicted least recently used first once their combined weight, roughly their
+ * size in bytes, passes maxWeight. Concurrent misses on the same key run a single extraction that the other callers
+ * wait for. Results cut short by a limit or deadline are returned but not cached. Thread-safe.
+ */
+public final class SnippetCache {
+    // per entry overhead on top of the offsets: key, map entry and links
+    private static final long ENTRY_WEIGHT = 96;
+
+    private final long maxWeight;
+    private final LinkedHashMap<Key, SnippetBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<SnippetBuffer>> loading = new HashMap<>();
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static final class Key {
+        final long fingerprint;
+        final int length;
+        final Object extractor;
+
+        Key(long fingerprint, int length, Object extractor) {
+            this.fingerprint = fingerprint;
+            this.length = length;
+            this.extractor = extractor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+
+            Key other = (Key) o;
+            return fingerprint == other.fingerprint && length == other.length && extractor.equals(other.extractor);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (fingerprint ^ (fingerprint >>> 32)) * 31 + extractor.hashCode();
+        }
+    }
+
+    public SnippetCache(long maxWeight) {
+        if (maxWeight < 1)
+            throw new IllegalArgumentException("maxWeight must be positive");
+
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the snippets of text, extracting them on a miss. A caller waiting for another thread's extraction of
+     * the same key counts as a hit. The offsets of a cached result are shared and can't be cleared for reuse.
+     */
+    public Snippets get(String text, SnippetExtractor extractor) {
+        Key key = new Key(fingerprint(text), text.length(), extractor.cacheKey());
+        CompletableFuture<SnippetBuffer> pending;
+
+        synchronized (this) {
+            SnippetBuffer cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return Snippets.of(text, cached);
+            }
+
+            pending = loading.get(key);
+            if (pending != null) {
+                hits++;
+            } else {
+                misses++;
+                loading.put(key, new CompletableFuture<>());
+            }
+        }
+
+        if (pending != null)
+            return Snippets.of(text, await(pending));
+
+        CompletableFuture<SnippetBuffer> load;
+        SnippetBuffer buffer;
+        try {
+            buffer = extractor.extract(text, null, new SnippetBuffer()).sharedCopy();
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                load = loading.remove(key);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        }
+
+        synchronized (this) {
+            load = loading.remove(key);
+            if (!buffer.isTruncated())
+                put(key, buffer);
+        }
+        load.complete(buffer);
+
+        return Snippets.of(text, buffer);
+    }
+
+    private static SnippetBuffer await(CompletableFuture<SnippetBuffer> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private void put(Key key, SnippetBuffer buffer) {
+        SnippetBuffer previous = entries.put(key, buffer);
+        if (previous != null)
+            weight -= weight(previous);
+        weight += weight(buffer);
+
+        Iterator<Map.Entry<Key, SnippetBuffer>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            Map.Entry<Key, SnippetBuffer> next = eldest.next();
+            if (next.getKey().equals(key) && entries.size() == 1)
+                break;
+
+            weight -= weight(next.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static long weight(SnippetBuffer buffer) {
+        return ENTRY_WEIGHT + buffer.weight();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * 64-bit hash of the text, mixing four chars per step with the multiply and rotate rounds of MurmurHash3.
+     * Not cryptographic: two different texts of the same length share a fingerprint with a chance of about 2^-64.
+     */
+    static long fingerprint(CharSequence text) {
+        int length = text.length();
+        long h = 0x9E3779B97F4A7C15L ^ length;
+        int i = 0;
+
+        for (; i + 4 <= length; i += 4) {
+            long block = text.charAt(i) | (long) text.charAt(i + 1) << 16 | (long) text.charAt(i + 2) << 32
+                    | (long) text.charAt(i + 3) << 48;
+            h = Long.rotateLeft(h ^ mix(block), 27) * 5 + 0x52DCE729;
+        }
+
+        long tail = 0;
+        for (int shift = 0; i < length; i++, shift += 16)
+            tail |= (long) text.charAt(i) << shift;
+        h ^= mix(tail);
+
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static long mix(long block) {
+        return Long.rotateLeft(block * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+    }
+}
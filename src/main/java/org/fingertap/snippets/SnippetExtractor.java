@@ -0,0 +1,852 @@
+package org.fingertap.snippets;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.BreakIterator;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable snippet extraction engine. Build it once per query and call {@link #extract(CharSequence)}
+ * from as many threads as needed; scratch buffers are reused per thread.
+ */
+public final class SnippetExtractor {
+    static final int MIN_SNIPPET_LENGTH = 100;
+    static final int MAX_SNIPPET_LENGTH = 200;
+    static final int LOOKAHEAD = 7;
+    static final int STREAM_BUFFER_SIZE = 1 << 16;
+    // with a deadline or cancellation, text is broken into sentences this many chars at a time, polling in between
+    static final int SEGMENT_CHUNK = 1 << 16;
+    // a sentence longer than this is cut when text is broken in chunks
+    static final int MAX_SEGMENT_CHUNK = 1 << 20;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final TermMatcher matcher;
+    private final boolean dropCoveredMatches;
+    private final int min_snippet_length;
+    private final int max_snippet_length;
+    private final int lookahead_count;
+    private final int topK;
+    private final int charBudget;
+    private final double[] termWeights;
+    private final int streamBufferSize;
+    private final ExtractionListener listener;
+    private final SentenceSegmenter segmenter;
+    private final Locale locale;
+    private final int maxMatches;
+    private final int maxSnippets;
+    private final int maxCharsScanned;
+    private final long timeoutNanos;
+    private volatile Object cacheKey;
+
+    private SnippetExtractor(Builder builder) {
+        this.matcher = builder.query != null ? builder.query.getMatcher()
+                : builder.matcher != null ? builder.matcher : TermMatcher.compile(builder.terms);
+        this.dropCoveredMatches = builder.query != null;
+        this.min_snippet_length = builder.min_snippet_length != null ? builder.min_snippet_length : MIN_SNIPPET_LENGTH;
+        this.max_snippet_length = builder.max_snippet_length != null ? builder.max_snippet_length : MAX_SNIPPET_LENGTH;
+        this.lookahead_count    = builder.lookahead_count != null ? builder.lookahead_count : LOOKAHEAD;
+        this.topK = builder.topK;
+        this.charBudget = builder.charBudget;
+        this.streamBufferSize = builder.streamBufferSize != null ? builder.streamBufferSize : STREAM_BUFFER_SIZE;
+        this.listener = builder.listener;
+        this.locale = builder.locale;
+        this.segmenter = builder.segmenter != null ? builder.segmenter
+                : locale != null ? BreakIteratorSentenceSegmenter.forLocale(locale) : BreakIteratorSentenceSegmenter.DEFAULT;
+        this.maxMatches = builder.maxMatches != null ? builder.maxMatches : Integer.MAX_VALUE;
+        this.maxSnippets = builder.maxSnippets != null ? builder.maxSnippets : Integer.MAX_VALUE;
+        this.maxCharsScanned = builder.maxCharsScanned != null ? builder.maxCharsScanned : Integer.MAX_VALUE;
+        this.timeoutNanos = builder.timeoutNanos;
+
+        this.termWeights = new double[matcher.size()];
+        for (int termId = 0; termId < termWeights.length; termId++) {
+            Double weight = builder.termWeights != null ? builder.termWeights.get(matcher.getTerm(termId)) : null;
+            termWeights[termId] = weight != null ? weight : 1.0;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // the calling thread's scratch buffers
+    static Scratch scratch() {
+        return SCRATCH.get();
+    }
+
+    public TermMatcher getMatcher() {
+        return matcher;
+    }
+
+    public int getMinSnippetLength() {
+        return min_snippet_length;
+    }
+
+    public int getMaxSnippetLength() {
+        return max_snippet_length;
+    }
+
+    public int getLookaheadCount() {
+        return lookahead_count;
+    }
+
+    public SentenceSegmenter getSegmenter() {
+        return segmenter;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    // equal for extractors giving the same snippets for any text, the deadline aside; see SnippetCache
+    Object cacheKey() {
+        Object key = cacheKey;
+
+        if (key == null) {
+            key = Arrays.asList(matcher.signature(), dropCoveredMatches, min_snippet_length, max_snippet_length,
+                    lookahead_count, topK, charBudget, Arrays.toString(termWeights), segmenter, locale, maxMatches,
+                    maxSnippets, maxCharsScanned);
+            cacheKey = key;
+        }
+
+        return key;
+    }
+
+    public boolean isRanked() {
+        return topK > 0;
+    }
+
+    public List<Snippet> extract(CharSequence text) {
+        return extract(text, null, (ExtractionControl) null);
+    }
+
+    /**
+     * Extracts using sentence boundaries computed earlier for the same text, so only term matching runs.
+     * The index must have been built with the same segmenter and min snippet length as this extractor.
+     */
+    public List<Snippet> extract(CharSequence text, SentenceIndex sentences) {
+        return extract(text, sentences, (ExtractionControl) null);
+    }
+
+    List<Snippet> extract(CharSequence text, ExtractionControl control) {
+        return extract(text, null, control);
+    }
+
+    // control, when given, is polled between sentences so long documents can be abandoned with partial results
+    List<Snippet> extract(CharSequence text, SentenceIndex index, ExtractionControl control) {
+        if (text == null || matcher.size() == 0)
+            return Collections.emptyList();
+
+        Scratch scratch = SCRATCH.get();
+        return fill(text, index, control, scratch, scratch.snippets).toSnippets(text);
+    }
+
+    /**
+     * Offsets only variant of {@link #extract(CharSequence)}: clears the buffer and writes snippet and match
+     * offsets into it, without creating any strings. Reusing one buffer per thread keeps extraction free of
+     * per document allocations.
+     */
+    public SnippetBuffer extract(CharSequence text, SnippetBuffer into) {
+        return extract(text, null, into);
+    }
+
+    public SnippetBuffer extract(CharSequence text, SentenceIndex sentences, SnippetBuffer into) {
+        into.clear();
+
+        if (text == null || matcher.size() == 0)
+            return into;
+
+        return fill(text, sentences, null, SCRATCH.get(), into);
+    }
+
+    private SnippetBuffer fill(CharSequence text, SentenceIndex index, ExtractionControl control, Scratch scratch,
+                               SnippetBuffer into) {
+        into.clear();
+
+        if (index != null)
+            checkIndex(text, index);
+
+        MatchBuffer matches = scratch.matches;
+        boolean timed = listener != null;
+        long begin = timed ? System.nanoTime() : 0;
+
+        window(scratch);
+        control = limit(control);
+        int limit = Math.min(text.length(), maxCharsScanned);
+
+        if (isRanked()) {
+            matches.clear(control != null ? control.remainingMatches(0) : Integer.MAX_VALUE);
+            matcher.match(text, 0, limit, scratch.lastEnds(matcher.size()), matches, control);
+            sort(matches);
+            long matched = timed ? System.nanoTime() : 0;
+
+            scratch.ranker.rank(text, matches, scratch.window, termWeights, Math.min(topK, maxSnippets), charBudget,
+                    max_snippet_length, lookahead_count, control, into);
+
+            if (control != null && matches.isFull())
+                control.stop(ExtractionControl.Stop.MATCH_LIMIT);
+            finish(control, limit < text.length(), into);
+
+            if (timed)
+                report(text, 0, matches.size(), into, begin, 0, matched - begin, System.nanoTime() - matched);
+            return into;
+        }
+
+        int[] boundaries;
+        int size;
+        if (index != null) {
+            boundaries = index.boundaries();
+            size = boundaries.length;
+        } else {
+            breakTextIntoSentences(text, limit, control, scratch);
+            boundaries = scratch.sentences.array();
+            size = scratch.sentences.size();
+        }
+
+        long now = timed ? System.nanoTime() : 0;
+        long sentenceNanos = now - begin, matchNanos = 0, windowNanos = 0;
+        int matchCount = 0;
+        int sentenceCount = 0;
+
+        for (int i = 0; i < size && boundaries[i] < limit; i += 2) {
+            if (control != null && control.shouldStop(matchCount, into.size()))
+                break;
+
+            int maxSentenceMatches = control != null ? control.remainingMatches(matchCount) : Integer.MAX_VALUE;
+            boolean found = matchSentence(text, boundaries[i], Math.min(boundaries[i + 1], limit), maxSentenceMatches, scratch);
+            matchCount += matches.size();
+            sentenceCount++;
+
+            if (timed) {
+                long matched = System.nanoTime();
+                matchNanos += matched - now;
+                now = matched;
+            }
+
+            if (found) {
+                fitWindow(text, boundaries[i], Math.min(boundaries[i + 1], limit), scratch);
+                scratch.window.writeTo(into, matches, 0, matches.size());
+
+                if (timed) {
+                    long windowed = System.nanoTime();
+                    windowNanos += windowed - now;
+                    now = windowed;
+                }
+            }
+        }
+
+        if (control != null && matches.isFull())
+            control.stop(ExtractionControl.Stop.MATCH_LIMIT);
+        finish(control, limit < text.length(), into);
+
+        if (timed)
+            report(text, sentenceCount, matchCount, into, begin, sentenceNanos, matchNanos, windowNanos);
+
+        return into;
+    }
+
+    // the caller's control, if any, tightened with this extractor's limits; null when nothing is limited
+    ExtractionControl limit(ExtractionControl control) {
+        if (maxMatches == Integer.MAX_VALUE && maxSnippets == Integer.MAX_VALUE && timeoutNanos == 0)
+            return control;
+
+        return (control != null ? control : new ExtractionControl(0, null)).limit(timeoutNanos, maxMatches, maxSnippets);
+    }
+
+    private void finish(ExtractionControl control, boolean scanLimited, SnippetBuffer into) {
+        if (scanLimited) {
+            into.truncated(true);
+
+            if (control != null)
+                control.stop(ExtractionControl.Stop.SCAN_LIMIT);
+        }
+
+        if (control != null && control.stopped() != null)
+            into.truncated(true);
+    }
+
+    private void report(CharSequence text, int sentences, int matches, SnippetBuffer into, long begin,
+                        long sentenceNanos, long matchNanos, long windowNanos) {
+        long total = System.nanoTime() - begin;
+
+        if (sentences > 0)
+            listener.onStage(ExtractionListener.Stage.SENTENCES, sentenceNanos);
+        listener.onStage(ExtractionListener.Stage.MATCHING, matchNanos);
+        listener.onStage(ExtractionListener.Stage.WINDOWING, windowNanos);
+        listener.onDocument(text.length(), sentences, matches, into.size(), total);
+    }
+
+    /**
+     * Extracts from term positions the caller already has, e.g. from its tokenizer at indexing time, instead of
+     * scanning the text for terms. Work is proportional to the number of matches. When sentences is null the
+     * boundaries are computed here, which reads the whole text once.
+     */
+    public List<Snippet> extract(CharSequence text, SentenceIndex sentences, TermPositions positions) {
+        if (text == null || positions == null || matcher.size() == 0)
+            return Collections.emptyList();
+
+        Scratch scratch = SCRATCH.get();
+        return fillFromPositions(text, sentences, positions, scratch, scratch.snippets).toSnippets(text);
+    }
+
+    public SnippetBuffer extract(CharSequence text, SentenceIndex sentences, TermPositions positions,
+                                 SnippetBuffer into) {
+        into.clear();
+
+        if (text == null || positions == null || matcher.size() == 0)
+            return into;
+
+        return fillFromPositions(text, sentences, positions, SCRATCH.get(), into);
+    }
+
+    private SnippetBuffer fillFromPositions(CharSequence text, SentenceIndex sentences, TermPositions positions,
+                                            Scratch scratch, SnippetBuffer into) {
+        into.clear();
+
+        boolean timed = listener != null;
+        long begin = timed ? System.nanoTime() : 0;
+
+        if (sentences == null)
+            sentences = SentenceIndex.build(text, this);
+        checkIndex(text, sentences);
+        window(scratch);
+        long matched = timed ? System.nanoTime() : 0;
+
+        MatchBuffer matches = scratch.matches;
+        positions.collect(matcher, text, scratch);
+        if (dropCoveredMatches)
+            matches.removeCovered();
+
+        ExtractionControl control = limit(null);
+        int limit = Math.min(text.length(), maxCharsScanned);
+        boolean scanLimited = false;
+
+        if (limit < text.length()) {
+            int scanned = 0;
+            while (scanned < matches.size() && matches.end(scanned) <= limit)
+                scanned++;
+
+            scanLimited = scanned < matches.size();
+            matches.truncate(scanned);
+        }
+        boolean matchLimited = control != null && matches.size() > control.remainingMatches(0);
+        if (matchLimited)
+            matches.truncate(control.remainingMatches(0));
+        long windowed = timed ? System.nanoTime() : 0;
+
+        if (isRanked()) {
+            scratch.ranker.rank(text, matches, scratch.window, termWeights, Math.min(topK, maxSnippets), charBudget,
+                    max_snippet_length, lookahead_count, control, into);
+            if (matchLimited)
+                control.stop(ExtractionControl.Stop.MATCH_LIMIT);
+            finish(control, scanLimited, into);
+
+            if (timed)
+                report(text, 0, matches.size(), into, begin, 0, windowed - matched, System.nanoTime() - windowed);
+            return into;
+        }
+
+        int sentence = -1;
+        int i = 0;
+
+        while (i < matches.size()) {
+            if (control != null && control.shouldStop(0, into.size()))
+                break;
+
+            int start = matches.start(i);
+
+            // matches are sorted, so the current sentence usually still holds the next one
+            if (sentence < 0 || start < sentences.getStart(sentence) || start >= sentences.getEnd(sentence))
+                sentence = sentences.find(start);
+
+            if (sentence < 0 || matches.end(i) > sentences.getEnd(sentence)) {
+                i++;
+                continue;
+            }
+
+            int sentenceEnd = sentences.getEnd(sentence);
+            int j = i + 1;
+            while (j < matches.size() && matches.start(j) < sentenceEnd)
+                j++;
+
+            scratch.window.fit(text, sentences.getStart(sentence), sentenceEnd, start, matches.end(i),
+                    max_snippet_length, lookahead_count);
+            scratch.window.writeTo(into, matches, i, j);
+            i = j;
+        }
+        if (matchLimited)
+            control.stop(ExtractionControl.Stop.MATCH_LIMIT);
+        finish(control, scanLimited, into);
+
+        if (timed)
+            report(text, sentences.size(), matches.size(), into, begin, matched - begin, windowed - matched,
+                    System.nanoTime() - windowed);
+
+        return into;
+    }
+
+    private void checkIndex(CharSequence text, SentenceIndex index) {
+        if (index.getTextLength() != text.length() || !index.isFor(this))
+            throw new IllegalArgumentException(
+                    "Sentence index was built for a different text, segmenter or min snippet length");
+    }
+
+    /**
+     * Streams snippets to the consumer as sentences are read, holding at most a bounded buffer of the
+     * document in memory. Snippet offsets are absolute positions in the stream. The reader is not closed.
+     */
+    public void extract(Reader reader, Consumer<Snippet> consumer) throws IOException {
+        StreamingExtraction extraction = streaming(reader);
+
+        while (extraction.advance(consumer)) {
+            // keep reading
+        }
+    }
+
+    public void extract(ReadableByteChannel channel, Charset charset, Consumer<Snippet> consumer) throws IOException {
+        extract(Channels.newReader(channel, charset.newDecoder(), -1), consumer);
+    }
+
+    public List<Snippet> extract(Path file) throws IOException {
+        return extract(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Memory maps the file and decodes its bytes in place, giving the same snippets as
+     * {@link #extract(Reader, Consumer)}. Matched terms report both char and byte offsets. Charsets other than
+     * UTF-8, ISO-8859-1 and US-ASCII go through a Reader instead. Ranked extractors need the whole document in
+     * memory and throw IllegalStateException.
+     */
+    public List<Snippet> extract(Path file, Charset charset) throws IOException {
+        if (isRanked())
+            throw new IllegalStateException("Ranked mode needs the whole document, use extract(CharSequence)");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean utf8 = StandardCharsets.UTF_8.equals(charset);
+            boolean singleByte = StandardCharsets.ISO_8859_1.equals(charset) || StandardCharsets.US_ASCII.equals(charset);
+
+            if (utf8 || singleByte)
+                return new MappedFileExtraction(this, channel, singleByte, MappedFileExtraction.SEGMENT_SHIFT).extract();
+
+            List<Snippet> snippets = new ArrayList<>();
+            extract(channel, charset, snippets::add);
+            return snippets;
+        }
+    }
+
+    // lazy variant of extract(Reader, Consumer), the document is only read as far as the stream is consumed
+    public Stream<Snippet> stream(Reader reader) {
+        return StreamSupport.stream(spliterator(streaming(reader)), false);
+    }
+
+    /**
+     * Lazy variant of {@link #extract(CharSequence)} giving the same snippets in document order. Sentences are
+     * broken and matched in growing chunks, only as far as the iterator is advanced, so the first snippets of a
+     * long document are ready early and a caller that stops pulling stops the work. Limits apply, the deadline
+     * counting from this call; ranked extractors need the whole document and are rejected.
+     */
+    public Iterator<Snippet> iterator(CharSequence text) {
+        return Spliterators.iterator(spliterator(text));
+    }
+
+    public Stream<Snippet> stream(CharSequence text) {
+        return StreamSupport.stream(spliterator(text), false);
+    }
+
+    private Spliterator<Snippet> spliterator(CharSequence text) {
+        if (isRanked())
+            throw new IllegalStateException("Ranked mode needs the whole document, use extract(CharSequence)");
+
+        if (text == null || matcher.size() == 0)
+            return Spliterators.emptySpliterator();
+
+        return spliterator(new StreamingExtraction(this, text, streamBufferSize));
+    }
+
+    private static Spliterator<Snippet> spliterator(StreamingExtraction extraction) {
+        return new Spliterators.AbstractSpliterator<Snippet>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final Deque<Snippet> ready = new ArrayDeque<>();
+            private boolean more = true;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Snippet> action) {
+                try {
+                    while (ready.isEmpty() && more)
+                        more = extraction.advance(ready::add);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                if (ready.isEmpty())
+                    return false;
+
+                action.accept(ready.poll());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Starts an empty document whose text is appended or edited over time, keeping its snippets up to date at a
+     * cost that follows the size of each edit. Limits and deadlines don't apply.
+     */
+    public IncrementalSnippets incremental() {
+        if (isRanked())
+            throw new IllegalStateException("Ranked mode needs the whole document, use extract(CharSequence)");
+
+        return new IncrementalSnippets(this);
+    }
+
+    private StreamingExtraction streaming(Reader reader) {
+        if (isRanked())
+            throw new IllegalStateException("Ranked mode needs the whole document, use extract(CharSequence)");
+
+        return new StreamingExtraction(this, reader, streamBufferSize);
+    }
+
+    int maxCharsScanned() {
+        return maxCharsScanned;
+    }
+
+    StreamingExtraction streaming(MappedFileExtraction file) {
+        return new StreamingExtraction(this, file, streamBufferSize);
+    }
+
+    // runs matching and windowing over one sentence, returns null when no term occurs in it
+    Snippet snippetFor(CharSequence text, int start, int end, long base, long[] byteOffsets, int maxMatches,
+                       Scratch scratch) {
+        if (!matchSentence(text, start, end, maxMatches, scratch))
+            return null;
+
+        if (byteOffsets != null)
+            scratch.matches.byteStarts(byteOffsets);
+
+        fitWindow(text, start, end, scratch);
+        return scratch.window.toSnippet(text, scratch.matches, 0, scratch.matches.size(), base);
+    }
+
+    // leaves the sentence's matches in scratch.matches, false when there are none
+    private boolean matchSentence(CharSequence text, int start, int end, int maxMatches, Scratch scratch) {
+        MatchBuffer matches = scratch.matches;
+
+        matches.clear(maxMatches);
+        matcher.match(text, start, end, scratch.lastEnds(matcher.size()), matches);
+
+        if (matches.size() == 0)
+            return false;
+
+        sort(matches);
+        return true;
+    }
+
+    private void fitWindow(CharSequence text, int start, int end, Scratch scratch) {
+        MatchBuffer matches = scratch.matches;
+        window(scratch).fit(text, start, end, matches.start(0), matches.end(0), max_snippet_length, lookahead_count);
+    }
+
+    // the thread's window, set up for this extractor's locale
+    SnippetWindow window(Scratch scratch) {
+        scratch.window.words(locale != null ? scratch.words(locale) : null);
+        return scratch.window;
+    }
+
+    private void sort(MatchBuffer matches) {
+        matches.sort();
+
+        if (dropCoveredMatches)
+            matches.removeCovered();
+    }
+
+    void breakTextIntoSentences(CharSequence text, Scratch scratch) {
+        breakTextIntoSentences(text, text.length(), null, scratch);
+    }
+
+    // fills scratch.sentences with (start, end) offset pairs over text[0, limit), merging sentences shorter than min_snippet_length
+    void breakTextIntoSentences(CharSequence text, int limit, ExtractionControl control, Scratch scratch) {
+        IntArray sentences = scratch.sentences;
+        IntArray ends = scratch.sentenceEnds;
+        sentences.clear();
+        ends.clear();
+
+        if (control == null || !control.isInterruptible())
+            segmenter.segment(text, 0, limit, scratch.addSentenceEnd);
+        else
+            segment(text, limit, control, scratch);
+
+        int start = 0;
+        int next = 0;
+        while (next < ends.size()) {
+            int end = ends.get(next++);
+
+            if (isBlank(text, start, end)) {
+                start = end;
+                continue;
+            }
+
+            int sentenceStart = start;
+
+            // pad sentence if too small
+            if (end - start < this.min_snippet_length) {
+                // append to the next line, unless we've reached the end, in which case, append the previous line to this.
+                if (next < ends.size()) {
+                    end = ends.get(next++);
+                } else if (sentences.size() > 0) {
+                    sentenceStart = sentences.get(sentences.size() - 2);
+                    sentences.truncate(sentences.size() - 2);
+                }
+            }
+
+            sentences.add(sentenceStart);
+            sentences.add(end);
+            start = end;
+        }
+    }
+
+    /**
+     * Segments text[0, limit) a chunk at a time, polling control in between, and stops early once it says so.
+     * A sentence running past the chunk is segmented again with the next, twice as long, chunk; one longer than
+     * MAX_SEGMENT_CHUNK is cut at a space.
+     */
+    private void segment(CharSequence text, int limit, ExtractionControl control, Scratch scratch) {
+        IntArray ends = scratch.sentenceEnds;
+        int from = 0;
+        int chunk = SEGMENT_CHUNK;
+
+        while (from < limit && !control.shouldStop()) {
+            int to = (int) Math.min((long) from + chunk, limit);
+            int before = ends.size();
+            segmenter.segment(text, from, to, scratch.addSentenceEnd);
+
+            if (to == limit)
+                return;
+
+            // the last sentence may go on past the chunk
+            ends.truncate(ends.size() - 1);
+
+            if (ends.size() > before) {
+                from = ends.get(ends.size() - 1);
+                chunk = SEGMENT_CHUNK;
+            } else if (chunk < MAX_SEGMENT_CHUNK) {
+                chunk *= 2;
+            } else {
+                int cut = to;
+                while (cut > from + 1 && !SnippetWindow.isSpace(text.charAt(cut - 1)))
+                    cut--;
+
+                from = cut > from + 1 ? cut : to;
+                ends.add(from);
+            }
+        }
+    }
+
+    static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) > ' ')
+                return false;
+        }
+
+        return true;
+    }
+
+    // per thread state, never shared between threads
+    static final class Scratch {
+        final IntArray sentences = new IntArray();
+        final IntArray sentenceEnds = new IntArray();
+        final IntConsumer addSentenceEnd = sentenceEnds::add;
+        private final Map<Locale, BreakIterator> wordIterators = new HashMap<>();
+        final MatchBuffer matches = new MatchBuffer();
+        final SnippetWindow window = new SnippetWindow();
+        final SnippetRanker ranker = new SnippetRanker();
+        final SnippetBuffer snippets = new SnippetBuffer();
+        private int[] lastEnds = new int[16];
+        private long[] keys = new long[16];
+        private int[][] positionLists = new int[16][];
+
+        BreakIterator words(Locale locale) {
+            return wordIterators.computeIfAbsent(locale, BreakIterator::getWordInstance);
+        }
+
+        int[] lastEnds(int terms) {
+            if (lastEnds.length < terms)
+                lastEnds = new int[terms];
+
+            return lastEnds;
+        }
+
+        long[] keys(int size) {
+            if (keys.length < size)
+                keys = new long[Math.max(size, keys.length * 2)];
+
+            return keys;
+        }
+
+        int[][] positionLists(int terms) {
+            if (positionLists.length < terms)
+                positionLists = new int[terms][];
+
+            return positionLists;
+        }
+    }
+
+    public static final class Builder {
+        private Collection<String> terms;
+        private TermMatcher matcher;
+        private SnippetQuery query;
+        private Integer min_snippet_length;
+        private Integer max_snippet_length;
+        private Integer lookahead_count;
+        private int topK;
+        private int charBudget;
+        private Map<String, Double> termWeights;
+        private Integer streamBufferSize;
+        private ExtractionListener listener;
+        private SentenceSegmenter segmenter;
+        private Locale locale;
+        private Integer maxMatches;
+        private Integer maxSnippets;
+        private Integer maxCharsScanned;
+        private long timeoutNanos;
+
+        private Builder() {
+        }
+
+        public Builder terms(Collection<String> terms) {
+            this.terms = terms;
+            this.matcher = null;
+            this.query = null;
+            return this;
+        }
+
+        public Builder matcher(TermMatcher matcher) {
+            this.matcher = matcher;
+            this.terms = null;
+            this.query = null;
+            return this;
+        }
+
+        // whole word, phrase and prefix terms; matches covered by a longer match are dropped
+        public Builder query(SnippetQuery query) {
+            this.query = query;
+            this.terms = null;
+            this.matcher = null;
+            return this;
+        }
+
+        public Builder minSnippetLength(Integer min_snippet_length) {
+            this.min_snippet_length = min_snippet_length;
+            return this;
+        }
+
+        public Builder maxSnippetLength(Integer max_snippet_length) {
+            this.max_snippet_length = max_snippet_length;
+            return this;
+        }
+
+        public Builder lookahead(Integer lookahead_count) {
+            this.lookahead_count = lookahead_count;
+            return this;
+        }
+
+        /**
+         * Switches to ranked mode: only the topK best scoring, non-overlapping windows are returned, best first,
+         * as long as their combined length fits in charBudget.
+         */
+        public Builder ranked(int topK, int charBudget) {
+            if (topK < 1 || charBudget < 1)
+                throw new IllegalArgumentException("topK and charBudget must be positive");
+
+            this.topK = topK;
+            this.charBudget = charBudget;
+            return this;
+        }
+
+        // relative importance of each term in ranked mode, e.g. an idf from the index; defaults to 1
+        public Builder termWeights(Map<String, Double> termWeights) {
+            this.termWeights = termWeights;
+            return this;
+        }
+
+        // chars of the document held in memory at once by the streaming methods
+        public Builder streamBufferSize(Integer streamBufferSize) {
+            if (streamBufferSize != null && streamBufferSize < 16)
+                throw new IllegalArgumentException("streamBufferSize must be at least 16");
+
+            this.streamBufferSize = streamBufferSize;
+            return this;
+        }
+
+        // per stage timings and counts of every in-memory extraction, e.g. a shared SnippetMetrics
+        public Builder listener(ExtractionListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        // how text is split into sentences, BreakIterator by default; see FastSentenceSegmenter
+        public Builder segmenter(SentenceSegmenter segmenter) {
+            this.segmenter = segmenter;
+            return this;
+        }
+
+        /**
+         * Language of the documents: sentences are broken with that locale's BreakIterator unless a segmenter is
+         * given, and scripts its word iterator splits with a dictionary, such as Thai, are windowed in real words.
+         * Without a locale, scripts written without spaces are windowed one grapheme per word.
+         */
+        public Builder locale(Locale locale) {
+            this.locale = locale;
+            return this;
+        }
+
+        /**
+         * Work budgets per document. Once one runs out extraction stops and returns what it has, and the SnippetBuffer
+         * result reports isTruncated(); the Reader, file and iterator methods stop the same way without reporting it.
+         * Null means unlimited.
+         */
+        public Builder maxMatches(Integer maxMatches) {
+            this.maxMatches = positive(maxMatches, "maxMatches");
+            return this;
+        }
+
+        public Builder maxSnippets(Integer maxSnippets) {
+            this.maxSnippets = positive(maxSnippets, "maxSnippets");
+            return this;
+        }
+
+        // only text[0, maxCharsScanned) is broken into sentences and searched
+        public Builder maxCharsScanned(Integer maxCharsScanned) {
+            this.maxCharsScanned = positive(maxCharsScanned, "maxCharsScanned");
+            return this;
+        }
+
+        // deadline per document, checked between sentences and every few thousand chars inside long ones
+        public Builder timeout(long timeout, TimeUnit unit) {
+            this.timeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        private static Integer positive(Integer value, String name) {
+            if (value != null && value < 1)
+                throw new IllegalArgumentException(name + " must be positive");
+
+            return value;
+        }
+
+        public SnippetExtractor build() {
+            return new SnippetExtractor(this);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.fingertap.snippets;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low overhead metrics collector: LongAdder counters for documents, chars, sentences, matches and snippets,
+ * and a latency histogram per stage and per document. Share one instance between extractors and threads and
+ * export the numbers periodically.
+ */
+public final class SnippetMetrics implements ExtractionListener {
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder textChars = new LongAdder();
+    private final LongAdder sentences = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder snippets = new LongAdder();
+    private final Map<Stage, Histogram> stages = new EnumMap<>(Stage.class);
+    private final Histogram documentNanos = new Histogram();
+
+    public SnippetMetrics() {
+        for (Stage stage : Stage.values())
+            stages.put(stage, new Histogram());
+    }
+
+    @Override
+    public void onStage(Stage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    @Override
+    public void onDocument(int textLength, int sentences, int matches, int snippets, long nanos) {
+        this.documents.increment();
+        this.textChars.add(textLength);
+        this.sentences.add(sentences);
+        this.matches.add(matches);
+        this.snippets.add(snippets);
+        documentNanos.record(nanos);
+    }
+
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    public long getTextChars() {
+        return textChars.sum();
+    }
+
+    public long getSentences() {
+        return sentences.sum();
+    }
+
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    public long getSnippets() {
+        return snippets.sum();
+    }
+
+    public Histogram getStage(Stage stage) {
+        return stages.get(stage);
+    }
+
+    public Histogram getDocumentNanos() {
+        return documentNanos;
+    }
+
+    public void reset() {
+        documents.reset();
+        textChars.reset();
+        sentences.reset();
+        matches.reset();
+        snippets.reset();
+        documentNanos.reset();
+        for (Histogram histogram : stages.values())
+            histogram.reset();
+    }
+
+    /**
+     * Log-linear histogram in the style of HdrHistogram: every power of two is split into 16 linear buckets,
+     * so any recorded value is reported within about 6%. Recording is lock free.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long value) {
+            value = Math.max(value, 0);
+
+            counts.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        // highest value in the bucket holding the given percentile, e.g. 99.9
+        public long getValueAtPercentile(double percentile) {
+            long total = count.sum();
+            if (total == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+
+                if (seen >= rank)
+                    return Math.min(lowerBound(i + 1) - 1, getMax());
+            }
+
+            return getMax();
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++)
+                counts.set(i, 0);
+
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS)
+                return bucket;
+            if (bucket >= BUCKETS)
+                return Long.MAX_VALUE;
+
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        }
+    }
+}
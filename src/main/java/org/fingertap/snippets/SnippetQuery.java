@@ -0,0 +1,261 @@
+package org.fingertap.snippets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query compiled once from user terms and shared across threads and documents. Terms are normalized up front:
+ * whitespace is collapsed, case is folded per char without a locale (so the Turkish dotless i is no special
+ * case), duplicates are dropped, and terms that can never match anywhere another term doesn't are removed.
+ * At extraction time a match lying inside a longer match of another term is dropped as well.
+ *
+ * Terms can match anywhere (the classic behaviour), only as whole words, as a phrase of whole words where each
+ * space matches any one whitespace char, or as a word prefix, in which case the match extends to the end of the word.
+ * A single word can also match fuzzily, any word within one or two edits, fewer for terms of up to 5 chars, or by
+ * its stem, so that studies matches study; both report the word found in the text.
+ */
+public final class SnippetQuery {
+    private final TermMatcher matcher;
+
+    private SnippetQuery(TermMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // terms match anywhere, also inside words, like a plain term collection
+    public static SnippetQuery literal(Collection<String> terms) {
+        Builder builder = builder();
+
+        if (terms != null) {
+            for (String term : terms)
+                builder.substring(term);
+        }
+
+        return builder.build();
+    }
+
+    // parses a simple query string, see Builder.parse(String)
+    public static SnippetQuery parse(String query) {
+        return builder().parse(query).build();
+    }
+
+    public TermMatcher getMatcher() {
+        return matcher;
+    }
+
+    // normalized terms that survived compilation, in the order they were added
+    public List<String> getTerms() {
+        List<String> terms = new ArrayList<>(matcher.size());
+        for (int termId = 0; termId < matcher.size(); termId++)
+            terms.add(matcher.getTerm(termId));
+
+        return Collections.unmodifiableList(terms);
+    }
+
+    public static final class Builder {
+        private final List<String> terms = new ArrayList<>();
+        private final List<Byte> rules = new ArrayList<>();
+        private boolean stemming;
+
+        private Builder() {
+        }
+
+        // words added after this match by their stem, e.g. running matches runs and run
+        public Builder stemming(boolean stemming) {
+            this.stemming = stemming;
+            return this;
+        }
+
+        public Builder substring(String term) {
+            return add(term, TermMatcher.SUBSTRING);
+        }
+
+        public Builder word(String word) {
+            return stemming ? stemmed(word) : add(word, TermMatcher.WORD);
+        }
+
+        // any whole word within maxEdits insertions, deletions or substitutions, maxEdits being 1 or 2; words of up
+        // to 2 chars allow none and words of up to 5 chars one
+        public Builder fuzzy(String word, int maxEdits) {
+            if (maxEdits < 1 || maxEdits > 2)
+                throw new IllegalArgumentException("maxEdits must be 1 or 2: " + maxEdits);
+
+            String term = singleWord(word);
+            WordTerms.checkFuzzy(term);
+            return add(term, maxEdits == 1 ? TermMatcher.FUZZY_1 : TermMatcher.FUZZY_2);
+        }
+
+        // any whole word with the same light English stem
+        public Builder stemmed(String word) {
+            return add(singleWord(word), TermMatcher.STEMMED);
+        }
+
+        public Builder phrase(String phrase) {
+            return add(phrase, TermMatcher.WORD);
+        }
+
+        // a trailing * is optional
+        public Builder prefix(String prefix) {
+            if (prefix == null)
+                return this;
+
+            int end = prefix.length();
+            while (end > 0 && prefix.charAt(end - 1) == '*')
+                end--;
+
+            return add(prefix.substring(0, end), TermMatcher.PREFIX);
+        }
+
+        /**
+         * Adds the terms of a simple query string: "quoted text" is a phrase, a word ending in * is a prefix, a word
+         * ending in ~ or ~2 matches within one or two edits and any other word is added with {@link #word(String)}.
+         */
+        public Builder parse(String query) {
+            int i = 0;
+
+            while (query != null && i < query.length()) {
+                char c = query.charAt(i);
+
+                if (SnippetWindow.isSpace(c)) {
+                    i++;
+                } else if (c == '"') {
+                    int close = query.indexOf('"', i + 1);
+                    int end = close < 0 ? query.length() : close;
+
+                    phrase(query.substring(i + 1, end));
+                    i = end + 1;
+                } else {
+                    int end = i;
+                    while (end < query.length() && !SnippetWindow.isSpace(query.charAt(end)))
+                        end++;
+
+                    String word = query.substring(i, end);
+                    int tilde = word.lastIndexOf('~');
+
+                    if (word.endsWith("*"))
+                        prefix(word);
+                    else if (tilde > 0 && (tilde == word.length() - 1 || word.endsWith("~1") || word.endsWith("~2")))
+                        fuzzy(word.substring(0, tilde), word.endsWith("~2") ? 2 : 1);
+                    else
+                        word(word);
+                    i = end;
+                }
+            }
+
+            return this;
+        }
+
+        private static String singleWord(String word) {
+            String normalized = normalize(word);
+
+            for (int i = 0; i < normalized.length(); i++) {
+                if (!TermMatcher.isWordChar(normalized.charAt(i)))
+                    throw new IllegalArgumentException("Not a single word: " + word);
+            }
+
+            return normalized;
+        }
+
+        private Builder add(String term, byte rule) {
+            String normalized = normalize(term);
+
+            if (!normalized.isEmpty()) {
+                terms.add(normalized);
+                rules.add(rule);
+            }
+            return this;
+        }
+
+        public SnippetQuery build() {
+            Map<String, Integer> byKey = new LinkedHashMap<>();
+
+            // one term per folded text, keeping the rule that matches the most positions; fuzzy and stemmed terms
+            // match other words, so they are only merged with the same term using the same rule
+            for (int i = 0; i < terms.size(); i++) {
+                String key = WordTerms.isWordRule(rules.get(i)) ? (char) rules.get(i).byteValue()
+                        + TermMatcher.fold(terms.get(i)) : TermMatcher.fold(terms.get(i));
+                Integer previous = byKey.get(key);
+
+                if (previous == null || permissiveness(rules.get(i)) > permissiveness(rules.get(previous)))
+                    byKey.put(key, i);
+            }
+
+            // whole words and prefixes starting with a shorter prefix only ever match where that prefix does
+            Iterator<Map.Entry<String, Integer>> entries = byKey.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Integer> entry = entries.next();
+
+                byte rule = rules.get(entry.getValue());
+
+                if (rule != TermMatcher.SUBSTRING && !WordTerms.isWordRule(rule) && coveredByPrefix(entry.getKey(), byKey))
+                    entries.remove();
+            }
+
+            List<String> unique = new ArrayList<>(byKey.size());
+            byte[] termRules = new byte[byKey.size()];
+            for (int i : byKey.values()) {
+                termRules[unique.size()] = rules.get(i);
+                unique.add(terms.get(i));
+            }
+
+            return new SnippetQuery(TermMatcher.compile(unique, termRules));
+        }
+
+        private boolean coveredByPrefix(String key, Map<String, Integer> byKey) {
+            for (Map.Entry<String, Integer> other : byKey.entrySet()) {
+                String prefix = other.getKey();
+
+                if (rules.get(other.getValue()) == TermMatcher.PREFIX && prefix.length() < key.length()
+                        && key.startsWith(prefix) && isWord(key, prefix.length()))
+                    return true;
+            }
+
+            return false;
+        }
+
+        private static boolean isWord(String value, int from) {
+            for (int i = from; i < value.length(); i++) {
+                if (!TermMatcher.isWordChar(value.charAt(i)))
+                    return false;
+            }
+
+            return true;
+        }
+
+        private static int permissiveness(byte rule) {
+            return rule == TermMatcher.SUBSTRING ? 2 : rule == TermMatcher.PREFIX ? 1 : 0;
+        }
+
+        // trims and collapses whitespace runs to a single space
+        private static String normalize(String term) {
+            if (term == null)
+                return "";
+
+            StringBuilder builder = new StringBuilder(term.length());
+            boolean space = false;
+
+            for (int i = 0; i < term.length(); i++) {
+                char c = term.charAt(i);
+
+                if (SnippetWindow.isSpace(c)) {
+                    space = builder.length() > 0;
+                } else {
+                    if (space)
+                        builder.append(' ');
+                    builder.append(c);
+                    space = false;
+                }
+            }
+
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.fingertap.snippets;
+
+import java.util.Arrays;
+
+/**
+ * Scores candidate windows over the document's match positions and keeps the best non-overlapping ones.
+ * Every match anchors one candidate, so scoring is a single two pointer pass over the sorted matches and
+ * snippets are only materialized for the windows that are actually selected. Holds per thread scratch state.
+ */
+final class SnippetRanker {
+    private static final double PROXIMITY_WEIGHT = 0.5;
+    private static final double REPEAT_WEIGHT = 0.1;
+    // windows fitted between polls of the control; scoring one is much cheaper, it polls 16 times less often
+    private static final int POLL_INTERVAL = 256;
+
+    private double[] scores = new double[16];
+    private int[] windowEnds = new int[16];
+    private int[] heap = new int[16];
+    private int[] termCounts = new int[16];
+    private double[] rarity = new double[16];
+    private final IntArray selected = new IntArray();
+
+    // control, when given, is polled while scoring and picking; windows scored before it stops are still ranked
+    void rank(CharSequence text, MatchBuffer matches, SnippetWindow window, double[] termWeights,
+              int topK, int charBudget, int max_snippet_length, int lookahead_count, ExtractionControl control,
+              SnippetBuffer into) {
+        int size = matches.size();
+
+        if (size == 0)
+            return;
+
+        ensureCapacity(size, termWeights.length);
+        computeRarity(matches, termWeights);
+        int scored = scoreWindows(matches, termWeights.length, max_snippet_length, control);
+
+        for (int i = 0; i < scored; i++)
+            heap[i] = i;
+        for (int i = scored / 2 - 1; i >= 0; i--)
+            siftDown(i, scored);
+
+        selected.clear();
+        int heapSize = scored;
+        int budget = charBudget;
+        int picked = 0;
+
+        for (int tried = 1; heapSize > 0 && picked < topK && budget > 0; tried++) {
+            if (control != null && tried % POLL_INTERVAL == 0 && control.shouldStop())
+                break;
+
+            int candidate = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(0, heapSize);
+
+            window.fit(text, 0, text.length(), matches.start(candidate), matches.end(windowEnds[candidate] - 1),
+                    max_snippet_length, lookahead_count);
+
+            if (overlapsSelected(window.start, window.end) || window.length() > budget)
+                continue;
+
+            selected.add(window.start);
+            selected.add(window.end);
+            budget -= window.length();
+
+            int from = firstMatchAtOrAfter(matches, window.start);
+            int to = from;
+            while (to < size && matches.start(to) < window.end)
+                to++;
+
+            window.writeTo(into, matches, from, to);
+            picked++;
+        }
+    }
+
+    // rarer terms in this document count for more, scaled by any caller supplied weight
+    private void computeRarity(MatchBuffer matches, double[] termWeights) {
+        Arrays.fill(termCounts, 0, termWeights.length, 0);
+        for (int i = 0; i < matches.size(); i++)
+            termCounts[matches.termId(i)]++;
+
+        for (int t = 0; t < termWeights.length; t++)
+            rarity[t] = termCounts[t] == 0 ? 0 : termWeights[t] * Math.log(1 + (double) matches.size() / termCounts[t]);
+
+        Arrays.fill(termCounts, 0, termWeights.length, 0);
+    }
+
+    // returns how many windows were scored, fewer than the matches when control stopped it
+    private int scoreWindows(MatchBuffer matches, int terms, int max_snippet_length, ExtractionControl control) {
+        int size = matches.size();
+        double coverage = 0;
+        int distinct = 0;
+        int j = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (control != null && i > 0 && i % (POLL_INTERVAL * 16) == 0 && control.shouldStop()) {
+                Arrays.fill(termCounts, 0, terms, 0);
+                return i;
+            }
+
+            int windowStart = matches.start(i);
+
+            while (j < size && matches.end(j) - windowStart <= max_snippet_length) {
+                int termId = matches.termId(j);
+                if (termCounts[termId]++ == 0) {
+                    coverage += rarity[termId];
+                    distinct++;
+                }
+                j++;
+            }
+
+            // a single match longer than the window still anchors its own candidate
+            int end = Math.max(j, i + 1);
+            int span = matches.end(end - 1) - windowStart;
+            double proximity = distinct > 1 ? PROXIMITY_WEIGHT * (1 - (double) span / max_snippet_length) : 0;
+
+            windowEnds[i] = end;
+            scores[i] = coverage * (1 + Math.max(proximity, 0)) + REPEAT_WEIGHT * (j - i - distinct);
+
+            if (j > i) {
+                int termId = matches.termId(i);
+                if (--termCounts[termId] == 0) {
+                    coverage -= rarity[termId];
+                    distinct--;
+                }
+            } else {
+                j = i + 1;
+            }
+        }
+
+        Arrays.fill(termCounts, 0, terms, 0);
+        return size;
+    }
+
+    private boolean overlapsSelected(int start, int end) {
+        for (int i = 0; i < selected.size(); i += 2) {
+            if (start < selected.get(i + 1) && selected.get(i) < end)
+                return true;
+        }
+
+        return false;
+    }
+
+    private static int firstMatchAtOrAfter(MatchBuffer matches, int offset) {
+        int lo = 0, hi = matches.size();
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (matches.start(mid) < offset)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return lo;
+    }
+
+    // max heap on score, earlier windows first on ties so results are stable
+    private void siftDown(int index, int size) {
+        int value = heap[index];
+
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size)
+                break;
+
+            if (child + 1 < size && better(heap[child + 1], heap[child]))
+                child++;
+            if (!better(heap[child], value))
+                break;
+
+            heap[index] = heap[child];
+            index = child;
+        }
+
+        heap[index] = value;
+    }
+
+    private boolean better(int a, int b) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private void ensureCapacity(int size, int terms) {
+        if (scores.length < size) {
+            int capacity = Math.max(size, scores.length * 2);
+            scores = new double[capacity];
+            windowEnds = new int[capacity];
+            heap = new int[capacity];
+        }
+
+        if (termCounts.length < terms) {
+            termCounts = new int[terms];
+            rarity = new double[terms];
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package org.fingertap.snippets;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Writes highlighted snippets straight to an Appendable, a Writer or a ByteBuffer (as UTF-8) in one pass,
+ * without building intermediate strings. Overlapping matches are always highlighted as one span; matches at
+ * most mergeGap chars apart are joined too. Text, and in JSON mode the tags as well, is escaped on the way
+ * out. Instances are immutable and thread-safe.
+ */
+public final class SnippetRenderer {
+    public enum Escaping {
+        NONE,
+        HTML,
+        JSON
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String preTag;
+    private final String postTag;
+    private final Escaping escaping;
+    private final int mergeGap;
+
+    private SnippetRenderer(Builder builder) {
+        this.escaping = builder.escaping;
+        this.mergeGap = builder.mergeGap;
+
+        // tags are markup in HTML, but inside a JSON string they are just more text
+        this.preTag = escaping == Escaping.JSON ? escapeJson(builder.preTag) : builder.preTag;
+        this.postTag = escaping == Escaping.JSON ? escapeJson(builder.postTag) : builder.postTag;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public void render(Snippet snippet, Appendable out) throws IOException {
+        String text = snippet.getText();
+        List<MatchedTerm> matchedTerms = snippet.getMatchedTerms();
+
+        int position = 0;
+        int spanStart = -1, spanEnd = -1;
+
+        for (MatchedTerm matchedTerm : matchedTerms) {
+            int start = matchedTerm.getStartIndex();
+            int end = Math.min(start + matchedTerm.getLength(), text.length());
+
+            if (spanStart >= 0 && start - spanEnd <= mergeGap) {
+                spanEnd = Math.max(spanEnd, end);
+                continue;
+            }
+
+            if (spanStart >= 0)
+                position = highlight(text, position, spanStart, spanEnd, out);
+
+            spanStart = Math.max(start, position);
+            spanEnd = end;
+        }
+
+        if (spanStart >= 0)
+            position = highlight(text, position, spanStart, spanEnd, out);
+
+        escape(text, position, text.length(), out);
+    }
+
+    // renders one snippet of a buffer extracted from text, ellipses included
+    public void render(CharSequence text, SnippetBuffer snippets, int snippet, Appendable out) throws IOException {
+        if (snippets.hasLeadingEllipsis(snippet))
+            out.append(SnippetWindow.ELLIPSIS).append(' ');
+
+        int position = snippets.getStart(snippet);
+        int end = snippets.getEnd(snippet);
+        int spanStart = -1, spanEnd = -1;
+
+        for (int m = snippets.getFirstMatch(snippet); m < snippets.getFirstMatch(snippet + 1); m++) {
+            int start = snippets.getMatchStart(m);
+            int matchEnd = start + snippets.getMatchLength(m);
+
+            if (spanStart >= 0 && start - spanEnd <= mergeGap) {
+                spanEnd = Math.max(spanEnd, matchEnd);
+                continue;
+            }
+
+            if (spanStart >= 0)
+                position = highlight(text, position, spanStart, spanEnd, out);
+
+            spanStart = Math.max(start, position);
+            spanEnd = matchEnd;
+        }
+
+        if (spanStart >= 0)
+            position = highlight(text, position, spanStart, spanEnd, out);
+
+        escape(text, position, end, out);
+
+        if (snippets.hasTrailingEllipsis(snippet))
+            out.append(' ').append(SnippetWindow.ELLIPSIS);
+    }
+
+    // writes UTF-8 at the buffer's position, throws BufferOverflowException when it does not fit
+    public void render(Snippet snippet, ByteBuffer out) {
+        try {
+            ByteBufferAppendable appendable = new ByteBufferAppendable(out);
+            render(snippet, appendable);
+            appendable.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void render(CharSequence text, SnippetBuffer snippets, int snippet, ByteBuffer out) {
+        try {
+            ByteBufferAppendable appendable = new ByteBufferAppendable(out);
+            render(text, snippets, snippet, appendable);
+            appendable.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String render(Snippet snippet) {
+        StringBuilder builder = new StringBuilder(snippet.getText().length() + 16);
+
+        try {
+            render(snippet, builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return builder.toString();
+    }
+
+    private int highlight(CharSequence text, int position, int spanStart, int spanEnd, Appendable out)
+            throws IOException {
+        escape(text, position, spanStart, out);
+        out.append(preTag);
+        escape(text, spanStart, spanEnd, out);
+        out.append(postTag);
+
+        return spanEnd;
+    }
+
+    // escapes other text like the snippet text, e.g. the remaining string fields of a JSON record
+    public void escape(CharSequence text, Appendable out) throws IOException {
+        escape(text, 0, text.length(), out);
+    }
+
+    // copies runs of chars that need no escaping in bulk
+    private void escape(CharSequence text, int start, int end, Appendable out) throws IOException {
+        if (escaping == Escaping.NONE) {
+            append(text, start, end, out);
+            return;
+        }
+
+        int run = start;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            String replacement = escaping == Escaping.HTML ? escapeHtml(c) : null;
+
+            if (escaping == Escaping.JSON && needsJsonEscape(c)) {
+                append(text, run, i, out);
+                appendJsonEscape(c, out);
+                run = i + 1;
+            } else if (replacement != null) {
+                append(text, run, i, out);
+                out.append(replacement);
+                run = i + 1;
+            }
+        }
+
+        append(text, run, end, out);
+    }
+
+    private static void append(CharSequence text, int start, int end, Appendable out) throws IOException {
+        if (start >= end)
+            return;
+
+        // Writer.append(csq, start, end) would copy the range into a new String first
+        if (out instanceof Writer && text instanceof String)
+            ((Writer) out).write((String) text, start, end - start);
+        else
+            out.append(text, start, end);
+    }
+
+    private static String escapeHtml(char c) {
+        switch (c) {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '"':
+                return "&quot;";
+            case '\'':
+                return "&#39;";
+            default:
+                return null;
+        }
+    }
+
+    private static boolean needsJsonEscape(char c) {
+        return c < 0x20 || c == '"' || c == '\\' || c == 0x2028 || c == 0x2029;
+    }
+
+    private static void appendJsonEscape(char c, Appendable out) throws IOException {
+        switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                out.append("\\u").append(HEX[c >> 12 & 0xF]).append(HEX[c >> 8 & 0xF])
+                        .append(HEX[c >> 4 & 0xF]).append(HEX[c & 0xF]);
+        }
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+
+        try {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+
+                if (needsJsonEscape(c))
+                    appendJsonEscape(c, builder);
+                else
+                    builder.append(c);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return builder.toString();
+    }
+
+    // encodes chars as UTF-8 straight into the buffer, joining surrogate pairs split across appends
+    private static final class ByteBufferAppendable implements Appendable {
+        private final ByteBuffer out;
+        private char highSurrogate;
+
+        ByteBufferAppendable(ByteBuffer out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            for (int i = start; i < end; i++)
+                append(csq.charAt(i));
+
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+
+                if (Character.isLowSurrogate(c)) {
+                    Utf8.encode(Character.toCodePoint(high, c), out);
+                    return this;
+                }
+                Utf8.encode(Utf8.REPLACEMENT, out);
+            }
+
+            if (c < 0x80)
+                out.put((byte) c);
+            else if (Character.isHighSurrogate(c))
+                highSurrogate = c;
+            else
+                Utf8.encode(Character.isLowSurrogate(c) ? Utf8.REPLACEMENT : c, out);
+
+            return this;
+        }
+
+        // a high surrogate left pending at the end has no pair
+        void finish() {
+            if (highSurrogate != 0)
+                Utf8.encode(Utf8.REPLACEMENT, out);
+
+            highSurrogate = 0;
+        }
+    }
+
+    public static final class Builder {
+        private String preTag = "<em>";
+        private String postTag = "</em>";
+        private Escaping escaping = Escaping.HTML;
+        private int mergeGap;
+
+        private Builder() {
+        }
+
+        public Builder tags(String preTag, String postTag) {
+            this.preTag = preTag != null ? preTag : "";
+            this.postTag = postTag != null ? postTag : "";
+            return this;
+        }
+
+        public Builder escaping(Escaping escaping) {
+            this.escaping = escaping != null ? escaping : Escaping.NONE;
+            return this;
+        }
+
+        /**
+         * Matches separated by at most mergeGap chars share one highlight, e.g. 1 joins the words of a phrase.
+         * The default 0 joins touching matches, -1 keeps them apart and only joins overlapping ones.
+         */
+        public Builder mergeGap(int mergeGap) {
+            if (mergeGap < -1)
+                throw new IllegalArgumentException("mergeGap must be -1 or more");
+
+            this.mergeGap = mergeGap;
+            return this;
+        }
+
+        public SnippetRenderer build() {
+            return new SnippetRenderer(this);
+        }
+    }
+}
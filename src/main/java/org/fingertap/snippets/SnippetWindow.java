@@ -0,0 +1,184 @@
+package org.fingertap.snippets;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Character offset window over a sentence. Fitting a window walks the words around the anchor match once,
+ * keeping word boundaries, and the snippet text is only built when the window is final. In scripts written
+ * without spaces every grapheme counts as a word, unless a locale's word iterator can split the script.
+ */
+final class SnippetWindow {
+    static final String ELLIPSIS = "...";
+
+    int start;
+    int end;
+    boolean leadingEllipsis;
+    boolean trailingEllipsis;
+
+    private BreakIterator words;
+    private boolean wordsReady;
+    private int sentenceBegin;
+    private int sentenceLimit;
+
+    // word iterator of the extractor's locale, or null
+    void words(BreakIterator words) {
+        this.words = words;
+    }
+
+    void fit(CharSequence text, int sentenceStart, int sentenceEnd, int anchorStart, int anchorEnd,
+             int max_snippet_length, int lookahead_count) {
+        while (sentenceStart < sentenceEnd && isSpace(text.charAt(sentenceStart)))
+            sentenceStart++;
+        while (sentenceEnd > sentenceStart && isSpace(text.charAt(sentenceEnd - 1)))
+            sentenceEnd--;
+
+        start = sentenceStart;
+        end = sentenceEnd;
+        leadingEllipsis = false;
+        trailingEllipsis = false;
+        wordsReady = false;
+        sentenceBegin = sentenceStart;
+        sentenceLimit = sentenceEnd;
+
+        if (sentenceEnd - sentenceStart <= max_snippet_length)
+            return;
+
+        // if the anchor is NOT the first word in the sentence then we need some prefix words for context
+        start = anchorStart;
+        for (int words = 0; words < lookahead_count && start > sentenceStart; words++)
+            start = previousWordStart(text, sentenceStart, start);
+
+        // now add words after the anchor until the window is full
+        end = anchorEnd;
+        while (end < sentenceEnd) {
+            int nextWordStart = skipSpaces(text, end, sentenceEnd);
+            int length = end - start + (nextWordStart > end ? 1 : 0);
+
+            if (length > max_snippet_length) {
+                trailingEllipsis = true;
+                break;
+            }
+
+            end = wordEnd(text, nextWordStart, sentenceEnd);
+        }
+
+        // pad the front with more words if there is still room
+        while (start > sentenceStart && length() < max_snippet_length)
+            start = previousWordStart(text, sentenceStart, start);
+
+        leadingEllipsis = start > sentenceStart;
+    }
+
+    // length of the rendered window, counting the ellipsis markers the way they are rendered
+    int length() {
+        return end - start + (trailingEllipsis ? ELLIPSIS.length() + 1 : 1);
+    }
+
+    Snippet toSnippet(CharSequence text, MatchBuffer matches, int from, int to) {
+        return toSnippet(text, matches, from, to, 0);
+    }
+
+    // base is the absolute offset of text in the source document, for callers working on a slice of it
+    Snippet toSnippet(CharSequence text, MatchBuffer matches, int from, int to, long base) {
+        int prefix = leadingEllipsis ? ELLIPSIS.length() + 1 : 0;
+        String snippetText = render(text, start, end, leadingEllipsis, trailingEllipsis);
+        List<MatchedTerm> matchedTerms = new ArrayList<>();
+
+        for (int i = from; i < to; i++) {
+            int matchStart = matches.start(i), matchEnd = matches.end(i);
+
+            if (matchStart >= start && matchEnd <= end) {
+                int offset = matchStart - start + prefix;
+                matchedTerms.add(new MatchedTerm(snippetText.substring(offset, offset + matchEnd - matchStart), offset,
+                        base + matchStart, matches.byteStart(i)));
+            }
+        }
+
+        return new Snippet(snippetText, matchedTerms, base + start, base + end);
+    }
+
+    // offsets only variant of toSnippet, nothing is copied out of the text
+    void writeTo(SnippetBuffer buffer, MatchBuffer matches, int from, int to) {
+        buffer.addSnippet(start, end, leadingEllipsis, trailingEllipsis);
+
+        for (int i = from; i < to; i++) {
+            int matchStart = matches.start(i), matchEnd = matches.end(i);
+
+            if (matchStart >= start && matchEnd <= end)
+                buffer.addMatch(matchStart, matchEnd - matchStart, matches.termId(i));
+        }
+    }
+
+    static String render(CharSequence text, int start, int end, boolean leadingEllipsis, boolean trailingEllipsis) {
+        StringBuilder builder = new StringBuilder(end - start + (leadingEllipsis ? ELLIPSIS.length() + 1 : 0)
+                + (trailingEllipsis ? ELLIPSIS.length() + 1 : 0));
+
+        if (leadingEllipsis)
+            builder.append(ELLIPSIS).append(' ');
+        builder.append(text, start, end);
+        if (trailingEllipsis)
+            builder.append(' ').append(ELLIPSIS);
+
+        return builder.toString();
+    }
+
+    private int previousWordStart(CharSequence text, int lowerBound, int position) {
+        while (position > lowerBound && isSpace(text.charAt(position - 1)))
+            position--;
+
+        if (position > lowerBound && WordUnits.isUnspacedBefore(text, position)) {
+            int c = Character.codePointBefore(text, position);
+
+            if (words != null && WordUnits.hasDictionary(c))
+                return Math.max(words(text).preceding(position), lowerBound);
+
+            return WordUnits.graphemeStart(text, lowerBound, position);
+        }
+
+        while (position > lowerBound && !isSpace(text.charAt(position - 1)) && !WordUnits.isUnspacedBefore(text, position))
+            position--;
+
+        return position;
+    }
+
+    private static int skipSpaces(CharSequence text, int position, int upperBound) {
+        while (position < upperBound && isSpace(text.charAt(position)))
+            position++;
+
+        return position;
+    }
+
+    private int wordEnd(CharSequence text, int position, int upperBound) {
+        if (position < upperBound && WordUnits.isUnspacedAt(text, position)) {
+            int c = Character.codePointAt(text, position);
+
+            if (words != null && WordUnits.hasDictionary(c)) {
+                int next = words(text).following(position);
+                return next == BreakIterator.DONE ? upperBound : Math.min(next, upperBound);
+            }
+
+            return WordUnits.graphemeEnd(text, position, upperBound);
+        }
+
+        while (position < upperBound && !isSpace(text.charAt(position)) && !WordUnits.isUnspacedAt(text, position))
+            position++;
+
+        return position;
+    }
+
+    // the locale's word iterator over the current sentence, only set up once a script needs it
+    private BreakIterator words(CharSequence text) {
+        if (!wordsReady) {
+            words.setText(new CharSequenceIterator(text, sentenceBegin, sentenceLimit));
+            wordsReady = true;
+        }
+
+        return words;
+    }
+
+    static boolean isSpace(char c) {
+        return c <= ' ' || Character.isWhitespace(c);
+    }
+}
@@ -0,0 +1,261 @@
+package org.fingertap.snippets;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Incremental sentence breaking and matching over a Reader or a mapped file with a fixed size carry-over buffer,
+ * or over text already in memory, which is read in place in growing chunks. Sentences are padded with the same rules as
+ * SnippetExtractor.extract(CharSequence); the last accepted sentence is held back until the next one arrives,
+ * since a short final sentence is merged into it. The extractor's budgets and deadline end the extraction early.
+ */
+final class StreamingExtraction {
+    // the first chunk of text in memory, small so the first snippets come out early
+    static final int FIRST_CHUNK = 1 << 12;
+
+    private final SnippetExtractor extractor;
+    private final Reader reader;
+    private final MappedFileExtraction file;
+    private final SnippetExtractor.Scratch scratch = new SnippetExtractor.Scratch();
+    // null when nothing is limited
+    private final ExtractionControl control;
+    private final int maxChars;
+    private int matchCount;
+    private int snippetCount;
+
+    // null when reading text in place
+    private final char[] buffer;
+    // byte offset of each char in buffer, only when decoding a mapped file
+    private final long[] byteOffsets;
+    private final CharSequence view;
+    private final int maxChunk;
+    private int chunk;
+    private int limit;
+    private long base;
+    private int scanned;
+    private boolean eof;
+    private boolean finished;
+
+    private int heldStart = -1, heldEnd;
+    private int pendingStart = -1, pendingEnd;
+
+    StreamingExtraction(SnippetExtractor extractor, Reader reader, int bufferSize) {
+        this.extractor = extractor;
+        this.control = extractor.limit(null);
+        this.maxChars = extractor.maxCharsScanned();
+        this.reader = reader;
+        this.file = null;
+        this.buffer = new char[bufferSize];
+        this.byteOffsets = null;
+        this.view = CharBuffer.wrap(buffer);
+        this.maxChunk = bufferSize;
+    }
+
+    StreamingExtraction(SnippetExtractor extractor, MappedFileExtraction file, int bufferSize) {
+        this.extractor = extractor;
+        this.control = extractor.limit(null);
+        this.maxChars = extractor.maxCharsScanned();
+        this.reader = null;
+        this.file = file;
+        this.buffer = new char[bufferSize];
+        this.byteOffsets = new long[bufferSize];
+        this.view = CharBuffer.wrap(buffer);
+        this.maxChunk = bufferSize;
+    }
+
+    StreamingExtraction(SnippetExtractor extractor, CharSequence text, int bufferSize) {
+        this.extractor = extractor;
+        this.control = extractor.limit(null);
+        this.maxChars = extractor.maxCharsScanned();
+        this.reader = null;
+        this.file = null;
+        this.buffer = null;
+        this.byteOffsets = null;
+        this.view = text;
+        this.maxChunk = bufferSize;
+        this.chunk = Math.min(FIRST_CHUNK, bufferSize);
+    }
+
+    // reads and processes one buffer worth of text, returns false once the whole input has been consumed
+    boolean advance(Consumer<Snippet> consumer) throws IOException {
+        if (finished)
+            return false;
+
+        fill();
+
+        if (scanned < limit) {
+            IntArray ends = scratch.sentenceEnds;
+            ends.clear();
+            extractor.getSegmenter().segment(view, scanned, limit, scratch.addSentenceEnd);
+
+            int start = scanned;
+            for (int i = 0; i < ends.size() && !stopped(); i++) {
+                int end = ends.get(i);
+
+                // the last sentence in the buffer may continue in the next read
+                if (end == limit && !eof)
+                    break;
+
+                sentence(start, end, consumer);
+                start = end;
+            }
+            scanned = start;
+        }
+
+        if (eof || stopped()) {
+            finish(consumer);
+            finished = true;
+            return false;
+        }
+
+        if (buffer != null)
+            compact(consumer);
+        return true;
+    }
+
+    private void fill() throws IOException {
+        if (buffer == null) {
+            int length = Math.min(view.length(), maxChars);
+
+            // at least double what is still unsegmented, so a sentence longer than a chunk is reached quickly
+            limit += Math.min(Math.max(chunk, limit - scanned), length - limit);
+            chunk = Math.min(chunk * 2, maxChunk);
+            eof = limit == length;
+            return;
+        }
+
+        while (!eof && limit < buffer.length) {
+            // text past maxCharsScanned is never read
+            int wanted = (int) Math.min(buffer.length - limit, maxChars - base - limit);
+            int read = wanted == 0 ? -1 : file != null ? file.read(buffer, byteOffsets, limit, wanted)
+                    : reader.read(buffer, limit, wanted);
+
+            if (read < 0)
+                eof = true;
+            else
+                limit += read;
+        }
+    }
+
+    private boolean stopped() {
+        return control != null && control.shouldStop(matchCount, snippetCount);
+    }
+
+    private void sentence(int start, int end, Consumer<Snippet> consumer) {
+        // a short sentence is padded with whatever comes next
+        if (pendingStart >= 0) {
+            accept(pendingStart, end, consumer);
+            pendingStart = -1;
+            return;
+        }
+
+        if (SnippetExtractor.isBlank(view, start, end))
+            return;
+
+        if (end - start < extractor.getMinSnippetLength()) {
+            pendingStart = start;
+            pendingEnd = end;
+            return;
+        }
+
+        accept(start, end, consumer);
+    }
+
+    private void accept(int start, int end, Consumer<Snippet> consumer) {
+        flushHeld(consumer);
+
+        heldStart = start;
+        heldEnd = end;
+    }
+
+    private void finish(Consumer<Snippet> consumer) {
+        // reached the end with a short sentence, append it to the previous one
+        if (pendingStart >= 0) {
+            if (heldStart < 0)
+                heldStart = pendingStart;
+
+            heldEnd = pendingEnd;
+            pendingStart = -1;
+        }
+
+        flushHeld(consumer);
+    }
+
+    private void flushHeld(Consumer<Snippet> consumer) {
+        if (heldStart < 0 || stopped())
+            return;
+
+        int maxMatches = control != null ? control.remainingMatches(matchCount) : Integer.MAX_VALUE;
+        Snippet snippet = extractor.snippetFor(view, heldStart, heldEnd, base, byteOffsets, maxMatches, scratch);
+        heldStart = -1;
+
+        if (snippet != null) {
+            matchCount += scratch.matches.size();
+            snippetCount++;
+            consumer.accept(snippet);
+        }
+    }
+
+    private void compact(Consumer<Snippet> consumer) {
+        int keep = keepFrom();
+
+        // a full buffer that cannot be compacted, give up on merges and cut the sentence if needed
+        if (keep == 0 && limit == buffer.length) {
+            flushHeld(consumer);
+
+            if (pendingStart >= 0 && pendingStart == keepFrom()) {
+                accept(pendingStart, pendingEnd, consumer);
+                pendingStart = -1;
+                flushHeld(consumer);
+            }
+
+            if (keepFrom() == 0 && scanned == 0) {
+                int cut = limit;
+                while (cut > 1 && !SnippetWindow.isSpace(buffer[cut - 1]))
+                    cut--;
+                if (cut <= 1)
+                    cut = WordUnits.graphemeStart(view, 0, limit);
+                if (cut == 0)
+                    cut = limit;
+
+                accept(0, cut, consumer);
+                flushHeld(consumer);
+                scanned = cut;
+            }
+
+            keep = keepFrom();
+        }
+
+        if (keep == 0)
+            return;
+
+        System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+        if (byteOffsets != null)
+            System.arraycopy(byteOffsets, keep, byteOffsets, 0, limit - keep);
+        limit -= keep;
+        scanned -= keep;
+        base += keep;
+
+        if (heldStart >= 0) {
+            heldStart -= keep;
+            heldEnd -= keep;
+        }
+        if (pendingStart >= 0) {
+            pendingStart -= keep;
+            pendingEnd -= keep;
+        }
+    }
+
+    private int keepFrom() {
+        int keep = scanned;
+
+        if (heldStart >= 0)
+            keep = Math.min(keep, heldStart);
+        if (pendingStart >= 0)
+            keep = Math.min(keep, pendingStart);
+
+        return keep;
+    }
+}
@@ -0,0 +1,427 @@
+package org.fingertap.snippets;
+
+import java.util.*;
+
+/**
+ * Case-insensitive multi-term matcher backed by an Aho-Corasick automaton.
+ * Compile once per query and reuse it across documents; instances are immutable and thread-safe.
+ */
+public final class TermMatcher {
+    private static final int ROOT = 0;
+    private static final int ASCII = 128;
+    static final int POLL_INTERVAL = 1 << 14;
+
+    public interface MatchListener {
+        void onMatch(int termId, int start, int end);
+    }
+
+    // per term match rules, see SnippetQuery
+    static final byte SUBSTRING = 0;
+    static final byte WORD = 1;
+    static final byte PREFIX = 2;
+    // compared against whole words instead of running through the automaton, see WordTerms
+    static final byte FUZZY_1 = 3;
+    static final byte FUZZY_2 = 4;
+    static final byte STEMMED = 5;
+
+    private final String[] terms;
+    private final int[] termLengths;
+    private final byte[] rules;
+    private final boolean foldSpaces;
+    private final WordTerms wordTerms;
+    // skips text no term can start in, null for queries it doesn't suit
+    private final CandidateScanner candidates;
+
+    // goto function, stored per state as a sorted run of (char, target) pairs
+    private final int[] edgeOffsets;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] rootAscii;
+
+    private final int[] fail;
+    private final int[] output;
+    private final int[] outputLink;
+
+    private TermMatcher(String[] terms, int[] termLengths, byte[] rules, boolean foldSpaces, WordTerms wordTerms,
+                        CandidateScanner candidates, int[] edgeOffsets, char[] edgeChars, int[] edgeTargets,
+                        int[] fail, int[] output, int[] outputLink) {
+        this.terms = terms;
+        this.termLengths = termLengths;
+        this.rules = rules;
+        this.foldSpaces = foldSpaces;
+        this.wordTerms = wordTerms;
+        this.candidates = candidates;
+        this.edgeOffsets = edgeOffsets;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.output = output;
+        this.outputLink = outputLink;
+
+        this.rootAscii = new int[ASCII];
+        for (char c = 0; c < ASCII; c++)
+            rootAscii[c] = edge(ROOT, c);
+    }
+
+    public static TermMatcher compile(Collection<String> terms) {
+        List<String> unique = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        if (terms != null) {
+            for (String term : terms) {
+                if (term == null || term.trim().isEmpty())
+                    continue;
+
+                if (seen.add(fold(term)))
+                    unique.add(term);
+            }
+        }
+
+        return compile(unique, null);
+    }
+
+    /**
+     * Compiles already deduplicated terms with a match rule each. Any rules also make every whitespace char
+     * match any other, so phrases match across line breaks.
+     */
+    static TermMatcher compile(List<String> unique, byte[] rules) {
+        boolean foldSpaces = rules != null;
+
+        // build the trie with per-state maps, flattened into sorted arrays afterwards
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(-1);
+
+        int[] termLengths = new int[unique.size()];
+        for (int id = 0; id < unique.size(); id++) {
+            String term = unique.get(id);
+            termLengths[id] = term.length();
+
+            if (rules != null && WordTerms.isWordRule(rules[id]))
+                continue;
+
+            int state = ROOT;
+            for (int i = 0; i < term.length(); i++) {
+                char c = fold(term.charAt(i), foldSpaces);
+                Integer next = trie.get(state).get(c);
+
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(c, next);
+                    trie.add(new TreeMap<>());
+                    terminal.add(-1);
+                }
+                state = next;
+            }
+            terminal.set(state, id);
+        }
+
+        int states = trie.size();
+        int[] edgeOffsets = new int[states + 1];
+        for (int s = 0; s < states; s++)
+            edgeOffsets[s + 1] = edgeOffsets[s] + trie.get(s).size();
+
+        char[] edgeChars = new char[edgeOffsets[states]];
+        int[] edgeTargets = new int[edgeOffsets[states]];
+        for (int s = 0; s < states; s++) {
+            int e = edgeOffsets[s];
+            for (Map.Entry<Character, Integer> edge : trie.get(s).entrySet()) {
+                edgeChars[e] = edge.getKey();
+                edgeTargets[e] = edge.getValue();
+                e++;
+            }
+        }
+
+        int[] output = new int[states];
+        for (int s = 0; s < states; s++)
+            output[s] = terminal.get(s);
+
+        // breadth first pass to compute failure and output links
+        int[] fail = new int[states];
+        int[] outputLink = new int[states];
+        Arrays.fill(outputLink, -1);
+
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+        for (int e = edgeOffsets[ROOT]; e < edgeOffsets[ROOT + 1]; e++)
+            queue[tail++] = edgeTargets[e];
+
+        while (head < tail) {
+            int state = queue[head++];
+
+            for (int e = edgeOffsets[state]; e < edgeOffsets[state + 1]; e++) {
+                char c = edgeChars[e];
+                int child = edgeTargets[e];
+
+                int f = fail[state];
+                int target;
+                while ((target = edge(edgeOffsets, edgeChars, edgeTargets, f, c)) < 0 && f != ROOT)
+                    f = fail[f];
+
+                fail[child] = target >= 0 ? target : ROOT;
+                outputLink[child] = output[fail[child]] >= 0 ? fail[child] : outputLink[fail[child]];
+                queue[tail++] = child;
+            }
+        }
+
+        return new TermMatcher(unique.toArray(new String[0]), termLengths, rules, foldSpaces,
+                WordTerms.of(unique, rules), CandidateScanner.forTerms(unique, rules, foldSpaces), edgeOffsets,
+                edgeChars, edgeTargets, fail, output, outputLink);
+    }
+
+    // the same automaton with another candidate scanner, or none, for comparing the scan paths
+    TermMatcher withScanner(CandidateScanner scanner) {
+        return new TermMatcher(terms, termLengths, rules, foldSpaces, wordTerms, scanner, edgeOffsets, edgeChars,
+                edgeTargets, fail, output, outputLink);
+    }
+
+    CandidateScanner scanner() {
+        return candidates;
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    public String getTerm(int termId) {
+        return terms[termId];
+    }
+
+    public int getTermLength(int termId) {
+        return termLengths[termId];
+    }
+
+    /**
+     * Reports every match inside text[start, end) in a single pass. Occurrences of the same term never overlap,
+     * each one is reported leftmost first, matching the behaviour of repeated indexOf calls. Fuzzy and stemmed
+     * terms are checked in the same pass, once per word, and report the word as it appears in the text.
+     */
+    public void match(CharSequence text, int start, int end, MatchListener listener) {
+        match(text, start, end, new int[terms.length], listener);
+    }
+
+    void match(CharSequence text, int start, int end, int[] lastEnds, MatchListener listener) {
+        match(text, start, end, lastEnds, listener, null);
+    }
+
+    // polls control, when given, every POLL_INTERVAL chars; returns where matching stopped, end when it ran through
+    int match(CharSequence text, int start, int end, int[] lastEnds, MatchListener listener, ExtractionControl control) {
+        if (terms.length == 0 || text == null)
+            return end;
+
+        Arrays.fill(lastEnds, 0, terms.length, start);
+
+        boolean words = wordTerms != null;
+        // start of the current word, -1 between words and -2 inside a word that began before start
+        int wordStart = words && start > 0 && isWordChar(text.charAt(start - 1))
+                && !WordUnits.isUnspaced(text.charAt(start - 1)) ? -2 : -1;
+
+        // between matches the automaton is at the root, where skipping to the next candidate is exact
+        CandidateScanner.Chunk chunk = candidates != null && end - start >= CandidateScanner.MIN_LENGTH
+                ? CandidateScanner.chunk() : null;
+
+        int poll = control != null ? start + POLL_INTERVAL : end;
+        int state = ROOT;
+        for (int i = start; i < end; i++) {
+            if (state == ROOT && chunk != null) {
+                i = candidates.next(text, i, end, chunk);
+                if (i == end)
+                    break;
+            }
+
+            if (i >= poll) {
+                if (control.shouldStop())
+                    return i;
+                poll = i + POLL_INTERVAL;
+            }
+
+            char c = text.charAt(i);
+
+            if (words) {
+                boolean wordChar = isWordChar(c) && !WordUnits.isUnspaced(c);
+
+                if (wordChar && wordStart == -1) {
+                    wordStart = i;
+                } else if (!wordChar && wordStart != -1) {
+                    if (wordStart >= 0)
+                        wordTerms.match(text, wordStart, i, listener);
+                    wordStart = -1;
+                }
+            }
+
+            state = step(state, fold(c, foldSpaces));
+
+            int s = output[state] >= 0 ? state : outputLink[state];
+            while (s >= 0) {
+                int termId = output[s];
+                int matchStart = i + 1 - termLengths[termId];
+
+                if (matchStart >= lastEnds[termId]) {
+                    int matchEnd = rules == null ? i + 1 : applyRule(rules[termId], text, matchStart, i + 1, end);
+
+                    if (matchEnd >= 0) {
+                        lastEnds[termId] = matchEnd;
+                        listener.onMatch(termId, matchStart, matchEnd);
+                    }
+                }
+                s = outputLink[s];
+            }
+        }
+
+        // a word running past end isn't a whole word here
+        if (wordStart >= 0 && (end == text.length() || !isWordChar(text.charAt(end))
+                || WordUnits.isUnspaced(text.charAt(end))))
+            wordTerms.match(text, wordStart, end, listener);
+
+        return end;
+    }
+
+    /**
+     * End of the occurrence of the term at offset, or -1 when it doesn't occur there, folded and checked by the
+     * term's rule exactly as scanning would. Fuzzy and stemmed terms match the whole word starting at offset.
+     */
+    int endAt(CharSequence text, int offset, int termId) {
+        if (offset < 0 || offset >= text.length())
+            return -1;
+
+        if (rules != null && WordTerms.isWordRule(rules[termId])) {
+            if (offset > 0 && isWordChar(text.charAt(offset - 1)) && !WordUnits.isUnspaced(text.charAt(offset - 1)))
+                return -1;
+
+            int end = offset;
+            while (end < text.length() && isWordChar(text.charAt(end)) && !WordUnits.isUnspaced(text.charAt(end)))
+                end++;
+
+            return end > offset && wordTerms.matches(text, offset, end, termId) ? end : -1;
+        }
+
+        String term = terms[termId];
+        int end = offset + term.length();
+        if (end > text.length())
+            return -1;
+
+        for (int i = 0; i < term.length(); i++) {
+            if (fold(text.charAt(offset + i), foldSpaces) != fold(term.charAt(i), foldSpaces))
+                return -1;
+        }
+
+        return rules == null ? end : applyRule(rules[termId], text, offset, end, text.length());
+    }
+
+    // end of the accepted match, which a prefix term extends to the end of its word, or -1 when rejected
+    private static int applyRule(byte rule, CharSequence text, int start, int end, int limit) {
+        if (rule == SUBSTRING)
+            return end;
+
+        if (start > 0 && joined(text.charAt(start - 1), text.charAt(start)))
+            return -1;
+
+        if (rule == PREFIX) {
+            while (end < limit && isWordChar(text.charAt(end)) && !WordUnits.isUnspaced(text.charAt(end)))
+                end++;
+            return end;
+        }
+
+        if (end < text.length() && joined(text.charAt(end - 1), text.charAt(end)))
+            return -1;
+
+        return end;
+    }
+
+    // no word boundary between two adjacent chars; in scripts written without spaces every char may start a word
+    private static boolean joined(char before, char after) {
+        return isWordChar(before) && isWordChar(after) && !WordUnits.isUnspaced(before) && !WordUnits.isUnspaced(after);
+    }
+
+    static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || Character.getType(c) == Character.NON_SPACING_MARK;
+    }
+
+    /**
+     * Convenience wrapper returning matches ordered by position, with start indexes relative to the text.
+     */
+    public List<MatchedTerm> findMatches(CharSequence text) {
+        List<MatchedTerm> termsFound = new ArrayList<>();
+
+        if (text == null)
+            return termsFound;
+
+        match(text, 0, text.length(), (termId, start, end) ->
+                termsFound.add(new MatchedTerm(text.subSequence(start, end).toString(), start)));
+
+        termsFound.sort(MATCH_ORDER);
+        return termsFound;
+    }
+
+    // folded terms with their rules, equal for matchers that report the same matches
+    String signature() {
+        StringBuilder signature = new StringBuilder();
+
+        for (int termId = 0; termId < terms.length; termId++) {
+            signature.append((char) (rules != null ? rules[termId] : SUBSTRING));
+            signature.append(fold(terms[termId])).append('\u0000');
+        }
+
+        return signature.toString();
+    }
+
+    static final Comparator<MatchedTerm> MATCH_ORDER = (a, b) -> a.getStartIndex() != b.getStartIndex()
+            ? Integer.compare(a.getStartIndex(), b.getStartIndex())
+            : Integer.compare(b.getLength(), a.getLength());
+
+    private int step(int state, char c) {
+        while (true) {
+            int target = state == ROOT && c < ASCII ? rootAscii[c] : edge(state, c);
+
+            if (target >= 0)
+                return target;
+            if (state == ROOT)
+                return ROOT;
+
+            state = fail[state];
+        }
+    }
+
+    private int edge(int state, char c) {
+        return edge(edgeOffsets, edgeChars, edgeTargets, state, c);
+    }
+
+    private static int edge(int[] edgeOffsets, char[] edgeChars, int[] edgeTargets, int state, char c) {
+        int lo = edgeOffsets[state], hi = edgeOffsets[state + 1] - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = edgeChars[mid];
+
+            if (m < c)
+                lo = mid + 1;
+            else if (m > c)
+                hi = mid - 1;
+            else
+                return edgeTargets[mid];
+        }
+
+        return -1;
+    }
+
+    // simple, locale independent case folding that keeps a one to one mapping between chars
+    static char fold(char c) {
+        if (c < ASCII)
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    static char fold(char c, boolean foldSpaces) {
+        return foldSpaces && SnippetWindow.isSpace(c) ? ' ' : fold(c);
+    }
+
+    static String fold(String value) {
+        char[] chars = new char[value.length()];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = fold(value.charAt(i));
+
+        return new String(chars);
+    }
+}
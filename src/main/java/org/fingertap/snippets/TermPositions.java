@@ -0,0 +1,102 @@
+package org.fingertap.snippets;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per document positional index: for each term, the sorted char offsets where it occurs, typically taken from
+ * the tokenizer at indexing time. Passed to {@link SnippetExtractor#extract(CharSequence, SentenceIndex, TermPositions)}
+ * it replaces scanning the text for terms. Terms are looked up case-insensitively. Instances are immutable.
+ */
+public final class TermPositions {
+    private final Map<String, int[]> positions;
+
+    private TermPositions(Map<String, int[]> positions) {
+        this.positions = positions;
+    }
+
+    public static TermPositions of(Map<String, int[]> positions) {
+        Map<String, int[]> folded = new HashMap<>();
+
+        for (Map.Entry<String, int[]> entry : positions.entrySet()) {
+            String term = entry.getKey();
+            if (term == null || term.trim().isEmpty() || entry.getValue() == null)
+                continue;
+
+            String key = TermMatcher.fold(term);
+            int[] previous = folded.get(key);
+            int[] offsets;
+
+            if (previous == null) {
+                offsets = entry.getValue().clone();
+            } else {
+                offsets = Arrays.copyOf(previous, previous.length + entry.getValue().length);
+                System.arraycopy(entry.getValue(), 0, offsets, previous.length, entry.getValue().length);
+            }
+
+            Arrays.sort(offsets);
+            folded.put(key, offsets);
+        }
+
+        return new TermPositions(Collections.unmodifiableMap(folded));
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    // sorted offsets of the term, null when the term is not indexed
+    public int[] getPositions(String term) {
+        int[] offsets = positions.get(TermMatcher.fold(term));
+        return offsets != null ? offsets.clone() : null;
+    }
+
+    /**
+     * Fills matches with the positions of the matcher's terms, ordered the way a scan of the text would report
+     * them. Positions that don't hold their term in this text, e.g. from a stale index, are skipped.
+     */
+    void collect(TermMatcher matcher, CharSequence text, SnippetExtractor.Scratch scratch) {
+        MatchBuffer matches = scratch.matches;
+        int[] lastEnds = scratch.lastEnds(matcher.size());
+        matches.clear();
+
+        int total = 0;
+        int[][] lists = scratch.positionLists(matcher.size());
+        for (int termId = 0; termId < matcher.size(); termId++) {
+            lists[termId] = positions.get(TermMatcher.fold(matcher.getTerm(termId)));
+            total += lists[termId] != null ? lists[termId].length : 0;
+        }
+
+        // one primitive sort of (start, termId) keys instead of a k-way merge over the terms
+        long[] keys = scratch.keys(total);
+        int count = 0;
+        for (int termId = 0; termId < matcher.size(); termId++) {
+            if (lists[termId] == null)
+                continue;
+
+            for (int offset : lists[termId]) {
+                if (matcher.endAt(text, offset, termId) >= 0)
+                    keys[count++] = (long) offset << 32 | termId;
+            }
+            lists[termId] = null;
+        }
+        Arrays.sort(keys, 0, count);
+
+        // fuzzy and stemmed terms end where the word at the position does
+        Arrays.fill(lastEnds, 0, matcher.size(), 0);
+        for (int i = 0; i < count; i++) {
+            int start = (int) (keys[i] >>> 32);
+            int termId = (int) keys[i];
+
+            if (start >= lastEnds[termId]) {
+                lastEnds[termId] = matcher.endAt(text, start, termId);
+                matches.onMatch(termId, start, lastEnds[termId]);
+            }
+        }
+
+        // equal starts are ordered longest first
+        matches.sort();
+    }
+}
@@ -0,0 +1,74 @@
+package org.fingertap.snippets;
+
+import java.nio.ByteBuffer;
+
+// just enough UTF-8 decoding to walk raw bytes without a CharsetDecoder, malformed input decodes to U+FFFD
+final class Utf8 {
+    static final int REPLACEMENT = 0xFFFD;
+
+    private Utf8() {
+    }
+
+    static boolean isContinuation(int b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    // number of bytes in the sequence introduced by lead, 0 when lead cannot start a sequence
+    static int sequenceLength(int lead) {
+        if (lead < 0x80)
+            return 1;
+        if (lead >= 0xC2 && lead <= 0xDF)
+            return 2;
+        if (lead >= 0xE0 && lead <= 0xEF)
+            return 3;
+        if (lead >= 0xF0 && lead <= 0xF4)
+            return 4;
+
+        return 0;
+    }
+
+    // decodes a complete sequence, returns -1 when it is malformed or overlong
+    static int decode(int b0, int b1, int b2, int b3, int length) {
+        int codePoint;
+
+        switch (length) {
+            case 1:
+                return b0;
+            case 2:
+                if (!isContinuation(b1))
+                    return -1;
+                return ((b0 & 0x1F) << 6) | (b1 & 0x3F);
+            case 3:
+                if (!isContinuation(b1) || !isContinuation(b2))
+                    return -1;
+                codePoint = ((b0 & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F);
+                return codePoint < 0x800 || (codePoint >= 0xD800 && codePoint <= 0xDFFF) ? -1 : codePoint;
+            case 4:
+                if (!isContinuation(b1) || !isContinuation(b2) || !isContinuation(b3))
+                    return -1;
+                codePoint = ((b0 & 0x07) << 18) | ((b1 & 0x3F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F);
+                return codePoint < 0x10000 || codePoint > 0x10FFFF ? -1 : codePoint;
+            default:
+                return -1;
+        }
+    }
+
+    // writes the code point as UTF-8, throws BufferOverflowException when out has no room for all of it
+    static void encode(int codePoint, ByteBuffer out) {
+        if (codePoint < 0x80) {
+            out.put((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            out.put((byte) (0xC0 | codePoint >> 6))
+                    .put((byte) (0x80 | codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            out.put((byte) (0xE0 | codePoint >> 12))
+                    .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                    .put((byte) (0x80 | codePoint & 0x3F));
+        } else {
+            out.put((byte) (0xF0 | codePoint >> 18))
+                    .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                    .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                    .put((byte) (0x80 | codePoint & 0x3F));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.fingertap.snippets;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CharSequence view over UTF-8 bytes, typically off-heap in a {@link DocumentStore}, that decodes chars on demand
+ * instead of materializing a String. All-ASCII text is read directly. Other text keeps a cursor, so the mostly
+ * forward access of extraction costs one decode per char; jumps go through checkpoints built on first use every
+ * 64 chars. Malformed bytes decode to U+FFFD. The bytes are only read, with absolute gets, but a view is not
+ * thread-safe: give each thread its own.
+ */
+public final class Utf8CharSequence implements CharSequence {
+    private static final int CHECKPOINT_SHIFT = 6;
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int byteLength;
+    private final int length;
+    private final boolean ascii;
+
+    // code point under the cursor: the char index and byte position where it starts
+    private int cursorChar;
+    private int cursorByte;
+    private int codePoint;
+    private int sequenceLength;
+
+    // byte position of the code point holding char k << CHECKPOINT_SHIFT, and the char where that code point starts
+    private int[] checkpointBytes;
+    private int[] checkpointChars;
+
+    // the buffer's remaining bytes, which are counted once up front
+    public Utf8CharSequence(ByteBuffer bytes) {
+        this(bytes, bytes.position(), bytes.remaining(), count(bytes, bytes.position(), bytes.remaining()),
+                isAscii(bytes, bytes.position(), bytes.remaining()));
+    }
+
+    Utf8CharSequence(ByteBuffer bytes, int offset, int byteLength, int charLength, boolean ascii) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.byteLength = byteLength;
+        this.length = charLength;
+        this.ascii = ascii;
+        this.sequenceLength = -1;
+    }
+
+    private static boolean isAscii(ByteBuffer bytes, int offset, int byteLength) {
+        for (int i = offset; i < offset + byteLength; i++) {
+            if (bytes.get(i) < 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    private static int count(ByteBuffer bytes, int offset, int byteLength) {
+        Utf8CharSequence view = new Utf8CharSequence(bytes, offset, byteLength, 0, false);
+        int chars = 0;
+
+        for (int position = 0; position < byteLength; position += view.sequenceLength) {
+            view.decode(position);
+            chars += Character.charCount(view.codePoint);
+        }
+
+        return chars;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    public int byteLength() {
+        return byteLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+
+        if (ascii)
+            return (char) bytes.get(offset + index);
+
+        seek(index);
+        if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT)
+            return (char) codePoint;
+
+        return index == cursorChar ? Character.highSurrogate(codePoint) : Character.lowSurrogate(codePoint);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+
+        if (ascii)
+            return new Utf8CharSequence(bytes, offset + start, end - start, end - start, true);
+
+        int startByte = bytePosition(start);
+        int endByte = bytePosition(end);
+
+        // a range splitting a surrogate pair has no byte range of its own
+        if (startByte < 0 || endByte < 0)
+            return new StringBuilder(end - start).append(this, start, end).toString();
+
+        return new Utf8CharSequence(bytes, offset + startByte, endByte - startByte, end - start, false);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = charAt(i);
+
+        return new String(chars);
+    }
+
+    // byte position where char index starts, -1 when it is the second half of a surrogate pair
+    private int bytePosition(int index) {
+        if (index == length)
+            return byteLength;
+
+        seek(index);
+        return index == cursorChar ? cursorByte : -1;
+    }
+
+    // moves the cursor to the code point holding char index
+    private void seek(int index) {
+        int checkpoint = index >>> CHECKPOINT_SHIFT;
+
+        if (sequenceLength < 0 && checkpoint <= 1) {
+            cursorChar = 0;
+            cursorByte = 0;
+            decode(0);
+        } else if (sequenceLength < 0 || index < cursorChar || checkpoint > (cursorChar >>> CHECKPOINT_SHIFT) + 1) {
+            checkpoints();
+            cursorChar = checkpointChars[checkpoint];
+            cursorByte = checkpointBytes[checkpoint];
+            decode(cursorByte);
+        }
+
+        while (cursorChar + Character.charCount(codePoint) <= index) {
+            cursorChar += Character.charCount(codePoint);
+            cursorByte += sequenceLength;
+            decode(cursorByte);
+        }
+    }
+
+    private void checkpoints() {
+        if (checkpointBytes != null)
+            return;
+
+        int count = (length >>> CHECKPOINT_SHIFT) + 1;
+        int[] byteStarts = new int[count];
+        int[] charStarts = new int[count];
+
+        int chars = 0;
+        for (int position = 0; position < byteLength; position += sequenceLength) {
+            decode(position);
+            int next = chars + Character.charCount(codePoint);
+
+            // the code point covering a multiple of 64 is that checkpoint's
+            for (int k = (chars + (1 << CHECKPOINT_SHIFT) - 1) >>> CHECKPOINT_SHIFT;
+                 k < count && k << CHECKPOINT_SHIFT < next; k++) {
+                byteStarts[k] = position;
+                charStarts[k] = chars;
+            }
+            chars = next;
+        }
+
+        checkpointBytes = byteStarts;
+        checkpointChars = charStarts;
+        sequenceLength = -1;
+    }
+
+    // decodes the code point starting at byte position into codePoint and sequenceLength
+    private void decode(int position) {
+        int b0 = bytes.get(offset + position) & 0xFF;
+
+        if (b0 < 0x80) {
+            codePoint = b0;
+            sequenceLength = 1;
+            return;
+        }
+
+        int n = Utf8.sequenceLength(b0);
+        if (n == 0 || position + n > byteLength) {
+            codePoint = Utf8.REPLACEMENT;
+            sequenceLength = 1;
+            return;
+        }
+
+        int base = offset + position;
+        int decoded = Utf8.decode(b0, bytes.get(base + 1) & 0xFF, n > 2 ? bytes.get(base + 2) & 0xFF : 0,
+                n > 3 ? bytes.get(base + 3) & 0xFF : 0, n);
+
+        codePoint = decoded >= 0 ? decoded : Utf8.REPLACEMENT;
+        sequenceLength = decoded >= 0 ? n : 1;
+    }
+}
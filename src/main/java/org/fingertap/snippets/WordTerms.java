@@ -0,0 +1,290 @@
+package org.fingertap.snippets;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fuzzy and stemmed query terms, which are compared against whole words of the text instead of running through
+ * the Aho-Corasick automaton. A fuzzy term is a Levenshtein automaton for edit distance 1 or 2, simulated
+ * bit-parallel with one long per allowed edit over char masks built once; a word is accepted in one pass over
+ * its chars. Like Lucene's AUTO fuzziness, short terms allow fewer edits: none up to 2 chars and one up to 5.
+ * Stemmed terms compare light English stems, computed from the text without copying the word.
+ */
+final class WordTerms {
+    private static final int MAX_FUZZY_LENGTH = 63;
+
+    private final int[] termIds;
+    private final byte[] rules;
+    private final String[] keys;
+    private final int[] maxEdits;
+    private final long[][] asciiMasks;
+    private final char[][] otherChars;
+    private final long[][] otherMasks;
+
+    private WordTerms(int[] termIds, byte[] rules, String[] keys) {
+        this.termIds = termIds;
+        this.rules = rules;
+        this.keys = keys;
+        this.maxEdits = new int[termIds.length];
+        this.asciiMasks = new long[termIds.length][];
+        this.otherChars = new char[termIds.length][];
+        this.otherMasks = new long[termIds.length][];
+
+        for (int t = 0; t < termIds.length; t++) {
+            if (rules[t] == TermMatcher.STEMMED)
+                continue;
+
+            String key = keys[t];
+            maxEdits[t] = Math.min(rules[t] == TermMatcher.FUZZY_1 ? 1 : 2, maxEdits(key.length()));
+
+            long[] ascii = new long[128];
+            StringBuilder others = new StringBuilder();
+
+            for (int j = 0; j < key.length(); j++) {
+                char c = key.charAt(j);
+
+                if (c < 128)
+                    ascii[c] |= 1L << j;
+                else if (others.indexOf(String.valueOf(c)) < 0)
+                    others.append(c);
+            }
+
+            char[] chars = others.toString().toCharArray();
+            Arrays.sort(chars);
+            long[] masks = new long[chars.length];
+            for (int j = 0; j < key.length(); j++) {
+                int i = Arrays.binarySearch(chars, key.charAt(j));
+                if (i >= 0)
+                    masks[i] |= 1L << j;
+            }
+
+            asciiMasks[t] = ascii;
+            otherChars[t] = chars;
+            otherMasks[t] = masks;
+        }
+    }
+
+    // null when no term has a word rule
+    static WordTerms of(List<String> terms, byte[] rules) {
+        if (rules == null)
+            return null;
+
+        int count = 0;
+        for (byte rule : rules) {
+            if (isWordRule(rule))
+                count++;
+        }
+        if (count == 0)
+            return null;
+
+        int[] termIds = new int[count];
+        byte[] wordRules = new byte[count];
+        String[] keys = new String[count];
+
+        int t = 0;
+        for (int termId = 0; termId < rules.length; termId++) {
+            if (!isWordRule(rules[termId]))
+                continue;
+
+            String folded = TermMatcher.fold(terms.get(termId));
+            termIds[t] = termId;
+            wordRules[t] = rules[termId];
+            keys[t] = rules[termId] == TermMatcher.STEMMED ? stem(folded) : folded;
+            t++;
+        }
+
+        return new WordTerms(termIds, wordRules, keys);
+    }
+
+    static boolean isWordRule(byte rule) {
+        return rule == TermMatcher.FUZZY_1 || rule == TermMatcher.FUZZY_2 || rule == TermMatcher.STEMMED;
+    }
+
+    // edits allowed for a fuzzy term of the given length, so that cat~2 doesn't match a, it or to
+    static int maxEdits(int length) {
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    static void checkFuzzy(String term) {
+        if (term.length() > MAX_FUZZY_LENGTH)
+            throw new IllegalArgumentException("Fuzzy terms are limited to " + MAX_FUZZY_LENGTH + " chars");
+    }
+
+    // reports every term matching the word text[start, end)
+    void match(CharSequence text, int start, int end, TermMatcher.MatchListener listener) {
+        long stem = -1;
+
+        for (int t = 0; t < termIds.length; t++) {
+            boolean matched;
+
+            if (rules[t] == TermMatcher.STEMMED) {
+                if (stem < 0)
+                    stem = stem(text, start, end);
+                matched = stemEquals(text, start, stem, keys[t]);
+            } else {
+                matched = withinDistance(text, start, end, t, maxEdits[t]);
+            }
+
+            if (matched)
+                listener.onMatch(termIds[t], start, end);
+        }
+    }
+
+    // true when the word at text[start, end) matches the given term
+    boolean matches(CharSequence text, int start, int end, int termId) {
+        for (int t = 0; t < termIds.length; t++) {
+            if (termIds[t] != termId)
+                continue;
+
+            if (rules[t] == TermMatcher.STEMMED)
+                return stemEquals(text, start, stem(text, start, end), keys[t]);
+
+            return withinDistance(text, start, end, t, maxEdits[t]);
+        }
+
+        return false;
+    }
+
+    /**
+     * Simulates the Levenshtein automaton of term t on the word. Bit j of state d is set when the first j + 1 term
+     * chars align with the chars read so far using at most d edits; the empty prefix is reachable while no more
+     * than d chars were read.
+     */
+    private boolean withinDistance(CharSequence text, int start, int end, int t, int maxEdits) {
+        int m = keys[t].length();
+        int n = end - start;
+
+        if (Math.abs(n - m) > maxEdits)
+            return false;
+
+        long all = (1L << m) - 1;
+        long r0 = 0, r1 = 1, r2 = 3;
+
+        for (int i = 0; i < n; i++) {
+            long mask = mask(t, TermMatcher.fold(text.charAt(start + i)));
+            long s0 = i == 0 ? 1 : 0, s1 = i <= 1 ? 1 : 0, s2 = i <= 2 ? 1 : 0;
+
+            long n0 = ((r0 << 1) | s0) & mask;
+            long n1 = (((r1 << 1) | s1) & mask) | (r0 << 1) | s0 | r0;
+            n1 |= n0 << 1;
+            long n2 = (((r2 << 1) | s2) & mask) | (r1 << 1) | s1 | r1;
+            n2 |= (n1 << 1) | (i == 0 ? 1 : 0);
+
+            r0 = n0 & all;
+            r1 = n1 & all;
+            r2 = n2 & all;
+
+            if (state(maxEdits, r0, r1, r2) == 0 && i >= maxEdits)
+                return false;
+        }
+
+        return ((state(maxEdits, r0, r1, r2) >>> (m - 1)) & 1) != 0;
+    }
+
+    private static long state(int edits, long r0, long r1, long r2) {
+        return edits == 0 ? r0 : edits == 1 ? r1 : r2;
+    }
+
+    private long mask(int t, char c) {
+        if (c < 128)
+            return asciiMasks[t][c];
+
+        int i = Arrays.binarySearch(otherChars[t], c);
+        return i >= 0 ? otherMasks[t][i] : 0;
+    }
+
+    static String stem(String folded) {
+        long stem = stem(folded, 0, folded.length());
+        String base = folded.substring(0, (int) stem);
+        char extra = (char) (stem >>> 32);
+
+        return extra != 0 ? base + extra : base;
+    }
+
+    /**
+     * Light English stemmer in the spirit of the S-stemmer, also removing -ed and -ing, a final e and a doubled
+     * final consonant, so that run, runs and running or study, studies and studied meet. Returns the stem length
+     * in the low bits and a char to append, such as the y of studies, in the high bits.
+     */
+    static long stem(CharSequence word, int start, int end) {
+        int n = end - start;
+        int length = n;
+        char extra = 0;
+
+        if (n > 4 && endsWith(word, start, end, "ies") && !isOneOf(at(word, start, n - 4), "ae")) {
+            length = n - 3;
+            extra = 'y';
+        } else if (n > 4 && endsWith(word, start, end, "ied")) {
+            length = n - 3;
+            extra = 'y';
+        } else if (n > 3 && endsWith(word, start, end, "es") && !isOneOf(at(word, start, n - 3), "aeo")) {
+            length = n - 2;
+        } else if (n > 3 && endsWith(word, start, end, "s") && !isOneOf(at(word, start, n - 2), "su")) {
+            length = n - 1;
+        } else if (n > 5 && endsWith(word, start, end, "ing") && hasVowel(word, start, n - 3)) {
+            length = n - 3;
+        } else if (n > 4 && endsWith(word, start, end, "ed") && !endsWith(word, start, end, "eed")
+                && hasVowel(word, start, n - 2)) {
+            length = n - 2;
+        }
+
+        if (extra == 0 && length > 2) {
+            char last = at(word, start, length - 1);
+
+            if (last == 'e' || (last == at(word, start, length - 2) && isConsonant(last)))
+                length--;
+        }
+
+        return (long) extra << 32 | length;
+    }
+
+    private static boolean stemEquals(CharSequence text, int start, long stem, String key) {
+        int length = (int) stem;
+        char extra = (char) (stem >>> 32);
+
+        if (key.length() != length + (extra != 0 ? 1 : 0))
+            return false;
+        if (extra != 0 && key.charAt(length) != extra)
+            return false;
+
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != TermMatcher.fold(text.charAt(start + i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static char at(CharSequence word, int start, int i) {
+        return TermMatcher.fold(word.charAt(start + i));
+    }
+
+    private static boolean endsWith(CharSequence word, int start, int end, String suffix) {
+        if (end - start < suffix.length())
+            return false;
+
+        for (int i = 0; i < suffix.length(); i++) {
+            if (TermMatcher.fold(word.charAt(end - suffix.length() + i)) != suffix.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean hasVowel(CharSequence word, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            if (isOneOf(at(word, start, i), "aeiouy"))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static boolean isConsonant(char c) {
+        return c >= 'a' && c <= 'z' && !isOneOf(c, "aeiou");
+    }
+
+    private static boolean isOneOf(char c, String chars) {
+        return chars.indexOf(c) >= 0;
+    }
+}
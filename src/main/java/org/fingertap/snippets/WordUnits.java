@@ -0,0 +1,90 @@
+package org.fingertap.snippets;
+
+// scripts written without spaces between words, and grapheme boundaries so windows never split a character
+final class WordUnits {
+    private WordUnits() {
+    }
+
+    // Han, kana and the south east asian scripts, plus CJK punctuation and fullwidth forms
+    static boolean isUnspaced(int c) {
+        if (c < 0x0E00)
+            return false;
+        if ((c >= 0x3000 && c <= 0x303F) || (c >= 0xFF00 && c <= 0xFFEF))
+            return true;
+
+        switch (Character.UnicodeScript.of(c)) {
+            case HAN:
+            case HIRAGANA:
+            case KATAKANA:
+            case THAI:
+            case LAO:
+            case KHMER:
+            case MYANMAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // scripts the JDK word BreakIterator splits with a dictionary; Han and kana runs come back whole
+    static boolean hasDictionary(int c) {
+        if (c < 0x0E00)
+            return false;
+
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.THAI || script == Character.UnicodeScript.LAO
+                || script == Character.UnicodeScript.KHMER || script == Character.UnicodeScript.MYANMAR;
+    }
+
+    static boolean isUnspacedAt(CharSequence text, int i) {
+        char c = text.charAt(i);
+        return c >= 0x0E00 && isUnspaced(Character.isHighSurrogate(c) ? Character.codePointAt(text, i) : c);
+    }
+
+    static boolean isUnspacedBefore(CharSequence text, int i) {
+        char c = text.charAt(i - 1);
+        return c >= 0x0E00 && isUnspaced(Character.isLowSurrogate(c) ? Character.codePointBefore(text, i) : c);
+    }
+
+    // end of the grapheme starting at position: one code point with its combining marks and joined code points
+    static int graphemeEnd(CharSequence text, int position, int limit) {
+        position += Character.charCount(Character.codePointAt(text, position));
+
+        while (position < limit) {
+            int c = Character.codePointAt(text, position);
+
+            if (c == 0x200D && position + 1 < limit)
+                position += 1 + Character.charCount(Character.codePointAt(text, position + 1));
+            else if (isExtend(c))
+                position += Character.charCount(c);
+            else
+                break;
+        }
+
+        return Math.min(position, limit);
+    }
+
+    static int graphemeStart(CharSequence text, int lowerBound, int position) {
+        while (position > lowerBound) {
+            int c = Character.codePointBefore(text, position);
+            position = Math.max(position - Character.charCount(c), lowerBound);
+
+            boolean joined = position > lowerBound && text.charAt(position - 1) == 0x200D;
+            if (!isExtend(c) && !joined)
+                return position;
+            if (joined)
+                position--;
+        }
+
+        return lowerBound;
+    }
+
+    private static boolean isExtend(int c) {
+        if (c < 0x0300)
+            return false;
+
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK
+                || type == Character.COMBINING_SPACING_MARK || (c >= 0x1F3FB && c <= 0x1F3FF);
+    }
+}
@@ -0,0 +1,187 @@
+package org.fingertap.snippets.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Appends records, one JSON line per file, through a direct buffer to a FileChannel, and keeps a checkpoint log
+ * next to the output so an interrupted run can resume. The log lists completed paths, "+path", and after each
+ * batch "@size", the output size once that batch's lines were forced to disk. Resuming cuts the output back to
+ * the last size logged and skips the paths logged before it; whatever came after is redone. Thread-safe.
+ */
+final class JsonLinesOutput implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel out;
+    private final FileChannel log;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final Set<String> completed;
+    private final StringBuilder batch = new StringBuilder();
+
+    private JsonLinesOutput(FileChannel out, FileChannel log, Set<String> completed) {
+        this.out = out;
+        this.log = log;
+        this.completed = completed;
+    }
+
+    /**
+     * Opens the output for writing. When the checkpoint log exists the run resumes where it was last logged,
+     * otherwise both files start empty.
+     */
+    static JsonLinesOutput open(Path output, Path checkpoint) throws IOException {
+        Set<String> completed = new HashSet<>();
+
+        if (!Files.exists(checkpoint)) {
+            FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            FileChannel log = FileChannel.open(checkpoint, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return new JsonLinesOutput(out, log, completed);
+        }
+
+        long size = read(checkpoint, completed);
+
+        // the log is rewritten without the paths past the last size, which are redone
+        Path rewritten = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (FileChannel log = FileChannel.open(rewritten, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder entries = new StringBuilder();
+            for (String path : completed) {
+                entries.append('+').append(path).append('\n');
+
+                if (entries.length() >= BUFFER_SIZE / 4) {
+                    write(log, entries);
+                    entries.setLength(0);
+                }
+            }
+
+            write(log, entries.append('@').append(size).append('\n'));
+            log.force(false);
+        }
+        Files.move(rewritten, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (out.size() < size) {
+            out.close();
+            throw new IOException(output + " is shorter than its checkpoint says, was it replaced?");
+        }
+        out.truncate(size);
+        out.position(size);
+
+        return new JsonLinesOutput(out, FileChannel.open(checkpoint, StandardOpenOption.APPEND), completed);
+    }
+
+    // collects the paths logged before the last complete "@size" line and returns that size
+    private static long read(Path checkpoint, Set<String> completed) throws IOException {
+        List<String> pending = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        char[] chars = new char[8192];
+        long size = 0;
+
+        try (Reader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            int read;
+            while ((read = reader.read(chars)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    // a line cut off by a crash has no newline yet and is ignored
+                    if (chars[i] != '\n') {
+                        line.append(chars[i]);
+                        continue;
+                    }
+
+                    if (line.length() > 0 && line.charAt(0) == '@') {
+                        completed.addAll(pending);
+                        pending.clear();
+                        size = Long.parseLong(line.substring(1));
+                    } else if (line.length() > 0 && line.charAt(0) == '+') {
+                        pending.add(line.substring(1));
+                    }
+                    line.setLength(0);
+                }
+            }
+        }
+
+        return size;
+    }
+
+    // true when an earlier run already wrote the path's record
+    boolean isCompleted(String path) {
+        return completed.contains(path);
+    }
+
+    int completedCount() {
+        return completed.size();
+    }
+
+    // appends the record; only a completed path is logged, others, like failed files, are done again on resume
+    synchronized void write(String path, CharSequence record, boolean completed) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(record);
+        encoder.reset();
+
+        while (encoder.encode(chars, buffer, true).isOverflow())
+            drain();
+        while (encoder.flush(buffer).isOverflow())
+            drain();
+
+        // a path with a line break can't be logged, its file is done again on resume
+        if (completed && path.indexOf('\n') < 0)
+            batch.append('+').append(path).append('\n');
+    }
+
+    /**
+     * Forces the lines written so far to disk, then logs their paths and the output size. A crash before the log
+     * is written only loses this batch, which is written again on resume.
+     */
+    synchronized void checkpoint() throws IOException {
+        drain();
+        out.force(false);
+
+        write(log, batch.append('@').append(out.position()).append('\n'));
+        log.force(false);
+        batch.setLength(0);
+    }
+
+    private void drain() throws IOException {
+        // through Buffer, so classes compiled on JDK 9+ without --release 8 still link on Java 8
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining())
+            out.write(buffer);
+        ((Buffer) buffer).clear();
+    }
+
+    private static void write(FileChannel channel, CharSequence text) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            try {
+                out.close();
+            } finally {
+                log.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package org.fingertap.snippets.cli;
+
+import org.fingertap.snippets.FastSentenceSegmenter;
+import org.fingertap.snippets.MatchedTerm;
+import org.fingertap.snippets.Snippet;
+import org.fingertap.snippets.SnippetExtractor;
+import org.fingertap.snippets.SnippetQuery;
+import org.fingertap.snippets.SnippetRenderer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Bulk snippet extraction over files on disk, for offline reindexing. Walks a directory, or reads a list of
+ * paths, extracts snippets from each file on a pool of worker threads and appends one JSON line per file to the
+ * output. Progress and throughput go to stderr. A checkpoint log kept next to the output lets a run that crashed
+ * or was killed resume where it was last checkpointed, see JsonLinesOutput. Files that failed get an error line
+ * but aren't checkpointed, so a resumed run tries them again and appends their new line.
+ *
+ *     java -jar snippets.jar --query "science philos*" --out snippets.jsonl --glob "*.txt" docs/
+ */
+public final class SnippetTool {
+    static final String USAGE = "usage: SnippetTool --query <query> --out <file.jsonl> (<directory> | --files <list>)\n"
+            + "  --glob <pattern>        only files whose name matches, e.g. *.txt\n"
+            + "  --charset <name>        charset of the files, UTF-8 by default\n"
+            + "  --threads <n>           worker threads, one per core by default\n"
+            + "  --checkpoint <file>     checkpoint log, <out>.checkpoint by default; resumes when it exists\n"
+            + "  --progress <seconds>    progress and checkpoint interval, 10 by default\n"
+            + "  --max-snippets <n>      snippets per file\n"
+            + "  --tags <pre>,<post>     highlight matches in the snippet text\n"
+            + "  --fast                  use FastSentenceSegmenter\n";
+
+    private static final ThreadLocal<StringBuilder> RECORDS = ThreadLocal.withInitial(StringBuilder::new);
+
+    private final SnippetExtractor extractor;
+    private final SnippetRenderer renderer;
+    private final Charset charset;
+    private final PrintStream err;
+
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong snippets = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicReference<IOException> writeFailure = new AtomicReference<>();
+
+    private SnippetTool(SnippetExtractor extractor, SnippetRenderer renderer, Charset charset, PrintStream err) {
+        this.extractor = extractor;
+        this.renderer = renderer;
+        this.charset = charset;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.err));
+    }
+
+    // returns the exit status: 0 when every file was processed, 1 when some failed, 2 for bad arguments
+    static int run(String[] args, PrintStream err) {
+        Options options;
+        SnippetExtractor extractor;
+        try {
+            options = Options.parse(args);
+            extractor = SnippetExtractor.builder()
+                    .query(SnippetQuery.parse(options.query))
+                    .maxSnippets(options.maxSnippets)
+                    .segmenter(options.fast ? new FastSentenceSegmenter() : null)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return 2;
+        }
+
+        SnippetRenderer renderer = SnippetRenderer.builder()
+                .escaping(SnippetRenderer.Escaping.JSON)
+                .tags(options.preTag, options.postTag)
+                .build();
+
+        try {
+            return new SnippetTool(extractor, renderer, options.charset, err).run(options);
+        } catch (IOException | UncheckedIOException e) {
+            err.println("snippets: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("snippets: interrupted");
+            return 1;
+        }
+    }
+
+    private int run(Options options) throws IOException, InterruptedException {
+        long begin = System.nanoTime();
+
+        try (JsonLinesOutput output = JsonLinesOutput.open(options.output, options.checkpoint)) {
+            ExecutorService workers = Executors.newFixedThreadPool(options.threads);
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+
+            try (Stream<Path> paths = paths(options)) {
+                submit(paths, output, workers, reporter, options, begin);
+            } finally {
+                // both still write to the output, which only closes once they are done
+                stop(workers);
+                stop(reporter);
+            }
+        }
+
+        if (writeFailure.get() != null)
+            throw writeFailure.get();
+
+        err.println(progress(begin));
+        return errors.get() == 0 ? 0 : 1;
+    }
+
+    private void submit(Stream<Path> paths, JsonLinesOutput output, ExecutorService workers,
+                        ScheduledExecutorService reporter, Options options, long begin) throws InterruptedException {
+        // bounds the paths queued ahead of the workers, the walk itself is lazy
+        Semaphore queued = new Semaphore(options.threads * 16);
+
+        if (output.completedCount() > 0)
+            err.println("snippets: resuming, " + output.completedCount() + " files already done");
+
+        reporter.scheduleAtFixedRate(() -> {
+            try {
+                output.checkpoint();
+            } catch (IOException e) {
+                writeFailure.compareAndSet(null, e);
+            }
+            err.println(progress(begin));
+        }, options.progressSeconds, options.progressSeconds, TimeUnit.SECONDS);
+
+        Iterator<Path> iterator = paths.iterator();
+        while (iterator.hasNext() && writeFailure.get() == null) {
+            Path path = iterator.next();
+
+            if (output.isCompleted(path.toString())) {
+                skipped.incrementAndGet();
+                continue;
+            }
+
+            queued.acquire();
+            workers.execute(() -> {
+                try {
+                    process(path, output);
+                } finally {
+                    queued.release();
+                }
+            });
+        }
+    }
+
+    // lets the tasks already queued finish; an interrupt cancels them, but this still waits for the running ones
+    private static void stop(ExecutorService executor) {
+        executor.shutdown();
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS))
+                    break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                executor.shutdownNow();
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static Stream<Path> paths(Options options) throws IOException {
+        Stream<Path> paths = options.fileList != null
+                ? Files.lines(options.fileList, StandardCharsets.UTF_8).filter(line -> !line.isEmpty()).map(Paths::get)
+                : Files.walk(options.directory).filter(Files::isRegularFile);
+
+        if (options.glob == null)
+            return paths;
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + options.glob);
+        return paths.filter(path -> path.getFileName() != null && matcher.matches(path.getFileName()));
+    }
+
+    private void process(Path path, JsonLinesOutput output) {
+        StringBuilder record = RECORDS.get();
+        record.setLength(0);
+
+        boolean completed = false;
+        try {
+            long size = Files.size(path);
+            List<Snippet> found = extractor.extract(path, charset);
+
+            record(path, found, record);
+            bytes.addAndGet(size);
+            snippets.addAndGet(found.size());
+            completed = true;
+        } catch (IOException | RuntimeException e) {
+            errors.incrementAndGet();
+            record.setLength(0);
+            error(path, e, record);
+        }
+
+        try {
+            output.write(path.toString(), record, completed);
+            files.incrementAndGet();
+        } catch (IOException e) {
+            writeFailure.compareAndSet(null, e);
+        }
+    }
+
+    // {"path":..., "snippets":[{"text":..., "start":..., "end":..., "matches":[{"term":..., "offset":..., ...}]}]}
+    private void record(Path path, List<Snippet> found, StringBuilder record) throws IOException {
+        record.append("{\"path\":");
+        string(path.toString(), record);
+        record.append(",\"snippets\":[");
+
+        for (int i = 0; i < found.size(); i++) {
+            Snippet snippet = found.get(i);
+
+            record.append(i == 0 ? "{\"text\":\"" : ",{\"text\":\"");
+            renderer.render(snippet, record);
+            record.append("\",\"start\":").append(snippet.getStartOffset())
+                    .append(",\"end\":").append(snippet.getEndOffset())
+                    .append(",\"matches\":[");
+
+            List<MatchedTerm> matches = snippet.getMatchedTerms();
+            for (int m = 0; m < matches.size(); m++) {
+                MatchedTerm match = matches.get(m);
+
+                record.append(m == 0 ? "{\"term\":" : ",{\"term\":");
+                string(match.getText(), record);
+                record.append(",\"offset\":").append(match.getSourceOffset())
+                        .append(",\"length\":").append(match.getLength());
+                if (match.getByteOffset() >= 0)
+                    record.append(",\"byte_offset\":").append(match.getByteOffset());
+                record.append('}');
+            }
+            record.append("]}");
+        }
+
+        record.append("]}\n");
+    }
+
+    private void error(Path path, Exception e, StringBuilder record) {
+        record.append("{\"path\":");
+        string(path.toString(), record);
+        record.append(",\"error\":");
+        string(e.getMessage() != null ? e.getMessage() : e.getClass().getName(), record);
+        record.append("}\n");
+    }
+
+    // a JSON string, escaped by the renderer, which is in JSON mode
+    private void string(String value, StringBuilder out) {
+        out.append('"');
+        try {
+            renderer.escape(value, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.append('"');
+    }
+
+    private String progress(long begin) {
+        double seconds = Math.max((System.nanoTime() - begin) / 1e9, 1e-3);
+
+        return String.format(Locale.ROOT,
+                "snippets: %d files (%.1f/s), %.1f MB (%.1f MB/s), %d snippets, %d errors, %d skipped",
+                files.get(), files.get() / seconds, bytes.get() / 1e6, bytes.get() / 1e6 / seconds, snippets.get(),
+                errors.get(), skipped.get());
+    }
+
+    static final class Options {
+        String query;
+        Path output;
+        Path checkpoint;
+        Path directory;
+        Path fileList;
+        String glob;
+        Charset charset = StandardCharsets.UTF_8;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int progressSeconds = 10;
+        Integer maxSnippets;
+        String preTag = "";
+        String postTag = "";
+        boolean fast;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+
+                if (!arg.startsWith("--")) {
+                    if (options.directory != null)
+                        throw new IllegalArgumentException("Only one directory can be given");
+                    options.directory = Paths.get(arg);
+                    continue;
+                }
+                if (arg.equals("--fast")) {
+                    options.fast = true;
+                    continue;
+                }
+
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException(arg + " needs a value");
+                String value = args[++i];
+
+                switch (arg) {
+                    case "--query":
+                        options.query = value;
+                        break;
+                    case "--out":
+                        options.output = Paths.get(value);
+                        break;
+                    case "--checkpoint":
+                        options.checkpoint = Paths.get(value);
+                        break;
+                    case "--files":
+                        options.fileList = Paths.get(value);
+                        break;
+                    case "--glob":
+                        options.glob = value;
+                        break;
+                    case "--charset":
+                        options.charset = Charset.forName(value);
+                        break;
+                    case "--threads":
+                        options.threads = positive(arg, value);
+                        break;
+                    case "--progress":
+                        options.progressSeconds = positive(arg, value);
+                        break;
+                    case "--max-snippets":
+                        options.maxSnippets = positive(arg, value);
+                        break;
+                    case "--tags":
+                        int comma = value.indexOf(',');
+                        if (comma < 0)
+                            throw new IllegalArgumentException("--tags takes <pre>,<post>");
+                        options.preTag = value.substring(0, comma);
+                        options.postTag = value.substring(comma + 1);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+
+            if (options.query == null || options.output == null)
+                throw new IllegalArgumentException("--query and --out are required");
+            if ((options.directory == null) == (options.fileList == null))
+                throw new IllegalArgumentException("Give either a directory or --files");
+            if (options.checkpoint == null)
+                options.checkpoint = options.output.resolveSibling(options.output.getFileName() + ".checkpoint");
+
+            return options;
+        }
+
+        private static int positive(String option, String value) {
+            try {
+                int n = Integer.parseInt(value);
+                if (n > 0)
+                    return n;
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+
+            throw new IllegalArgumentException(option + " takes a positive number");
+        }
+    }
+}
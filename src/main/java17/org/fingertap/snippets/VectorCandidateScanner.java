@@ -0,0 +1,45 @@
+package org.fingertap.snippets;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * CandidateScanner comparing a whole vector of chars per step with the jdk.incubator.vector API. Only compiled on
+ * JDK 17+ (the vector profile) and loaded reflectively, so the rest of the library still runs on Java 8.
+ */
+final class VectorCandidateScanner extends CandidateScanner {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    VectorCandidateScanner(char[] firsts, char[] firstBits, char[] seconds, char[] secondBits) {
+        super(firsts, firstBits, seconds, secondBits);
+    }
+
+    @Override
+    int next(char[] text, int from, int to) {
+        int lanes = SPECIES.length();
+        int i = from;
+
+        // each step also loads the chars one ahead, for the second char of the pairs
+        for (; i + lanes < to; i += lanes) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, text, i);
+            ShortVector following = ShortVector.fromCharArray(SPECIES, text, i + 1);
+            VectorMask<Short> nonAscii = following.and((short) 0xFF80).compare(VectorOperators.NE, 0);
+
+            VectorMask<Short> candidates = chars.and((short) 0xFF80).compare(VectorOperators.NE, 0);
+            for (int t = 0; t < firsts.length; t++) {
+                VectorMask<Short> first = chars.or((short) firstBits[t]).compare(VectorOperators.EQ, (short) firsts[t]);
+                VectorMask<Short> second = following.or((short) secondBits[t])
+                        .compare(VectorOperators.EQ, (short) seconds[t]);
+
+                candidates = candidates.or(first.and(second.or(nonAscii)));
+            }
+
+            if (candidates.anyTrue())
+                return i + candidates.firstTrue();
+        }
+
+        return super.next(text, i, to);
+    }
+}
@@ -0,0 +1,110 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class CandidateScannerTest extends TestCase {
+    public CandidateScannerTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(CandidateScannerTest.class);
+    }
+
+    private static final String ALPHABET = "scienSCIEN ph.,\n\u00E9\u017F\u212A\u79D1";
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+
+        return text.toString();
+    }
+
+    public void testMatchesEqualTheAutomatonAlone() {
+        Random random = new Random(5);
+        List<List<String>> queries = Arrays.asList(
+                Arrays.asList("science"),
+                Arrays.asList("sc", "ne", "i"),
+                Arrays.asList("Sie", "ss", "K", "n."),
+                Arrays.asList("s.c", "ice", "e,"));
+
+        for (List<String> terms : queries) {
+            TermMatcher matcher = TermMatcher.compile(terms);
+            assertNotNull(terms.toString(), matcher.scanner());
+
+            TermMatcher scalar = matcher.withScanner(matcher.scanner().scalar());
+            TermMatcher automaton = matcher.withScanner(null);
+
+            for (int n = 0; n < 300; n++) {
+                String text = randomText(random, random.nextInt(400));
+
+                assertEquals(automaton.findMatches(text), matcher.findMatches(text));
+                assertEquals(automaton.findMatches(text), scalar.findMatches(text));
+            }
+        }
+    }
+
+    public void testVectorAndScalarFindTheSameCandidates() {
+        CandidateScanner scanner = TermMatcher.compile(Arrays.asList("science", "k", "ph")).scanner();
+        CandidateScanner scalar = scanner.scalar();
+
+        // set by the vector profile, where falling back to the scalar loop would compare it with itself
+        if (Boolean.getBoolean("snippets.vector"))
+            assertTrue(CandidateScanner.isVectorized());
+        assertEquals(CandidateScanner.isVectorized(), scanner.getClass() != CandidateScanner.class);
+        Random random = new Random(9);
+
+        for (int n = 0; n < 300; n++) {
+            char[] text = randomText(random, random.nextInt(200)).toCharArray();
+            int from = text.length == 0 ? 0 : random.nextInt(text.length);
+
+            for (int i = from; i < text.length; i = scalar.next(text, i, text.length) + 1)
+                assertEquals(scalar.next(text, i, text.length), scanner.next(text, i, text.length));
+        }
+    }
+
+    public void testSkipsTextWithoutCandidates() {
+        CandidateScanner scanner = TermMatcher.compile(Arrays.asList("science")).scanner();
+        String words = "all the words here are ok but the SCience one, and ScIeNcE";
+        char[] text = words.toCharArray();
+
+        assertEquals(words.indexOf("SC"), scanner.next(text, 0, text.length));
+        assertEquals(words.indexOf("Sc"), scanner.next(text, words.indexOf("SC") + 1, text.length));
+        assertEquals(text.length, scanner.next(text, words.indexOf("Sc") + 1, text.length));
+        // non-ASCII chars may fold to ASCII ones, so they are always candidates
+        assertEquals(1, scanner.next("a\u017Fb".toCharArray(), 0, 3));
+    }
+
+    public void testLongTextsAreScannedInChunks() {
+        Random random = new Random(11);
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("science", "sc", "n."));
+        TermMatcher automaton = matcher.withScanner(null);
+
+        for (int n = 0; n < 20; n++) {
+            String text = randomText(random, random.nextInt(4 * CandidateScanner.CHUNK_LENGTH));
+
+            assertEquals(automaton.findMatches(text), matcher.findMatches(text));
+            assertEquals(automaton.findMatches(text), matcher.findMatches(new StringBuilder(text)));
+            assertEquals(automaton.findMatches(text), matcher.findMatches(CharBuffer.wrap(text)));
+        }
+
+        // a whole document doesn't grow the buffer
+        matcher.findMatches(randomText(random, 1 << 20));
+        assertEquals(CandidateScanner.CHUNK_LENGTH, CandidateScanner.chunk().capacity());
+    }
+
+    public void testOnlyShortPlainQueriesGetAScanner() {
+        assertNull(TermMatcher.compile(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i")).scanner());
+        assertNull(TermMatcher.compile(Arrays.asList("caf\u00E9", "\u00E9t\u00E9")).scanner());
+        assertNull(SnippetQuery.parse("science~").getMatcher().scanner());
+        assertNotNull(SnippetQuery.parse("\"natural science\" philosophy*").getMatcher().scanner());
+    }
+}
@@ -0,0 +1,130 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class DocumentStoreTest extends TestCase {
+    public DocumentStoreTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(DocumentStoreTest.class);
+    }
+
+    private final String english = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy.";
+    private final String mixed = "Caf\u00E9 science na\u00EFve \u79D1\u5B66\u306F\u77E5\u8B58\u3067\u3059\u3002 Emoji \uD83D\uDE00 science and \uD840\uDC00 knowledge. " + english;
+
+    private Path file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("documents", ".store");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testDocumentsReadBackWithoutStrings() throws IOException {
+        try (DocumentStore.Writer writer = DocumentStore.writer(file)) {
+            writer.add(42, mixed).add(7, english).add(9, "");
+        }
+
+        DocumentStore store = DocumentStore.open(file);
+        assertEquals(3, store.size());
+        assertNull(store.get(8));
+        assertFalse(store.contains(8));
+        assertEquals("", store.get(9).toString());
+
+        Utf8CharSequence ascii = store.get(7);
+        assertEquals(english, ascii.toString());
+        assertEquals(english.length(), ascii.byteLength());
+
+        Utf8CharSequence view = store.get(42);
+        assertEquals(mixed.length(), view.length());
+        assertEquals(mixed.getBytes(StandardCharsets.UTF_8).length, view.byteLength());
+        assertEquals(mixed, view.toString());
+    }
+
+    public void testRandomAccess() throws IOException {
+        try (DocumentStore.Writer writer = DocumentStore.writer(file)) {
+            writer.add(1, mixed);
+        }
+
+        Utf8CharSequence view = DocumentStore.open(file).get(1);
+        Random random = new Random(7);
+
+        for (int n = 0; n < 2000; n++) {
+            int i = random.nextInt(mixed.length());
+            assertEquals("char " + i, mixed.charAt(i), view.charAt(i));
+        }
+
+        for (int n = 0; n < 200; n++) {
+            int start = random.nextInt(mixed.length());
+            int end = start + random.nextInt(mixed.length() - start + 1);
+            assertEquals(mixed.substring(start, end), view.subSequence(start, end).toString());
+        }
+    }
+
+    public void testExtractionOverTheStore() throws IOException {
+        try (DocumentStore.Writer writer = DocumentStore.writer(file)) {
+            writer.add(1, english).add(2, mixed);
+        }
+
+        DocumentStore store = DocumentStore.open(file);
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science", "knowledge")).build();
+
+        assertEquals(extractor.extract(english), extractor.extract(store.get(1)));
+        assertEquals(extractor.extract(mixed), extractor.extract(store.get(2)));
+    }
+
+    public void testDocumentsNeverCrossSegments() throws IOException {
+        try (DocumentStore.Writer writer = new DocumentStore.Writer(file, 8)) {
+            for (int id = 0; id < 10; id++)
+                writer.add(id, english.substring(0, 50 + 20 * id));
+        }
+
+        DocumentStore store = DocumentStore.open(file);
+        for (int id = 0; id < 10; id++)
+            assertEquals(english.substring(0, 50 + 20 * id), store.get(id).toString());
+
+        try (DocumentStore.Writer writer = new DocumentStore.Writer(file, 8)) {
+            writer.add(1, english);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testDuplicateIdsAreRejected() throws IOException {
+        DocumentStore.Writer writer = DocumentStore.writer(file).add(3, english).add(1, english).add(3, mixed);
+
+        try {
+            writer.close();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testViewOverBuffer() {
+        byte[] bytes = mixed.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+
+        Utf8CharSequence view = new Utf8CharSequence(direct);
+        assertEquals(mixed, view.toString());
+
+        Utf8CharSequence malformed = new Utf8CharSequence(ByteBuffer.wrap(new byte[]{'a', (byte) 0xC3, 'b', (byte) 0xFF}));
+        assertEquals("a\uFFFDb\uFFFD", malformed.toString());
+    }
+}
@@ -0,0 +1,182 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ExtractionLimitsTest extends TestCase {
+    public ExtractionLimitsTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(ExtractionLimitsTest.class);
+    }
+
+    private String document(int sentences) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++)
+            text.append("Sentence ").append(i).append(" mentions the needle and the haystack over and over again, so that it is long enough. ");
+
+        return text.toString();
+    }
+
+    public void testUnlimitedExtractionIsNotTruncated() {
+        String text = document(20);
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("the")).build();
+        SnippetBuffer buffer = extractor.extract(text, new SnippetBuffer());
+
+        assertEquals(SentenceIndex.build(text, extractor).size(), buffer.size());
+        assertFalse(buffer.isTruncated());
+    }
+
+    public void testMaxSnippets() {
+        String text = document(20);
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle")).maxSnippets(3).build();
+        SnippetBuffer buffer = extractor.extract(text, new SnippetBuffer());
+
+        assertEquals(3, buffer.size());
+        assertTrue(buffer.isTruncated());
+        assertEquals(SnippetExtractor.builder().terms(Arrays.asList("needle")).build().extract(text).subList(0, 3),
+                buffer.toSnippets(text));
+    }
+
+    public void testMaxMatchesStopsInsideASentence() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("the")).maxMatches(5).build();
+        SnippetBuffer buffer = extractor.extract(document(20), new SnippetBuffer());
+
+        assertEquals(5, buffer.getTotalMatchCount());
+        assertTrue(buffer.isTruncated());
+    }
+
+    public void testMaxCharsScanned() {
+        String text = document(20);
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle")).maxCharsScanned(500).build();
+        SnippetBuffer buffer = extractor.extract(text, new SnippetBuffer());
+
+        assertTrue(buffer.isTruncated());
+        assertTrue(buffer.size() > 0 && buffer.size() < 10);
+        for (int i = 0; i < buffer.size(); i++)
+            assertTrue(buffer.getEnd(i) <= 500);
+
+        Snippets snippets = Snippets.of(text, extractor);
+        assertTrue(snippets.isTruncated());
+        assertEquals(buffer.size(), snippets.getSnippets().size());
+    }
+
+    public void testExpiredDeadlineReturnsPartialResults() throws Exception {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle")).timeout(1, TimeUnit.NANOSECONDS).build();
+        SnippetBuffer buffer = extractor.extract(document(200), new SnippetBuffer());
+
+        assertTrue(buffer.isTruncated());
+        assertTrue(buffer.size() < 200);
+    }
+
+    public void testLimitsApplyToRankedAndPositionalExtraction() {
+        String text = document(20);
+        SnippetExtractor ranked = SnippetExtractor.builder().terms(Arrays.asList("needle")).ranked(10, 10000).maxSnippets(2).build();
+
+        assertEquals(2, ranked.extract(text).size());
+
+        SnippetExtractor limited = SnippetExtractor.builder().terms(Arrays.asList("needle")).maxMatches(4).build();
+        TermPositions positions = TermPositions.of(Collections.singletonMap("needle",
+                new int[]{text.indexOf("needle"), text.indexOf("needle", 100), text.indexOf("needle", 200),
+                        text.indexOf("needle", 300), text.indexOf("needle", 400), text.indexOf("needle", 500)}));
+        SnippetBuffer buffer = limited.extract(text, null, positions, new SnippetBuffer());
+
+        assertEquals(4, buffer.getTotalMatchCount());
+        assertTrue(buffer.isTruncated());
+    }
+
+    public void testDeadlineBoundsRankedExtraction() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 8 << 20)
+            text.append("the needle and the haystack and the needle again, over and over. ");
+
+        SnippetExtractor ranked = SnippetExtractor.builder().terms(Arrays.asList("the", "needle", "haystack"))
+                .ranked(5, 1000).timeout(5, TimeUnit.MILLISECONDS).build();
+
+        long begin = System.nanoTime();
+        SnippetBuffer buffer = ranked.extract(text, new SnippetBuffer());
+
+        assertTrue(buffer.isTruncated());
+        assertTrue(System.nanoTime() - begin < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    public void testDeadlineBoundsOneHugeSentence() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 16 << 20)
+            text.append("a needle without any full stop goes on and on ");
+
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle"))
+                .timeout(5, TimeUnit.MILLISECONDS).build();
+
+        long begin = System.nanoTime();
+        SnippetBuffer buffer = extractor.extract(text, new SnippetBuffer());
+
+        assertTrue(buffer.isTruncated());
+        assertTrue(System.nanoTime() - begin < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    public void testChunkedSentencesMatchWholeText() {
+        String text = document(2000) + "a needle in a sentence without an end " + document(1).replace('.', ',');
+        SnippetExtractor plain = SnippetExtractor.builder().terms(Arrays.asList("needle")).build();
+        SnippetExtractor timed = SnippetExtractor.builder().terms(Arrays.asList("needle"))
+                .timeout(1, TimeUnit.HOURS).build();
+
+        SnippetBuffer buffer = timed.extract(text, new SnippetBuffer());
+        assertFalse(buffer.isTruncated());
+        assertEquals(plain.extract(text), buffer.toSnippets(text));
+    }
+
+    public void testLimitsApplyToStreamingAndFiles() throws Exception {
+        String text = document(20);
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle", "haystack"))
+                .maxSnippets(2).build();
+        List<Snippet> expected = extractor.extract(text);
+        assertEquals(2, expected.size());
+
+        List<Snippet> streamed = new ArrayList<>();
+        extractor.extract(new StringReader(text), streamed::add);
+        assertEquals(expected, streamed);
+
+        Path file = Files.createTempFile("snippets", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            assertEquals(expected, extractor.extract(file));
+        } finally {
+            Files.delete(file);
+        }
+
+        SnippetExtractor matches = SnippetExtractor.builder().terms(Arrays.asList("the")).maxMatches(5).build();
+        int total = 0;
+        for (Snippet snippet : (Iterable<Snippet>) () -> matches.iterator(text))
+            total += snippet.getMatchedTerms().size();
+        assertEquals(5, total);
+
+        SnippetExtractor scanned = SnippetExtractor.builder().terms(Arrays.asList("needle")).maxCharsScanned(500).build();
+        streamed.clear();
+        scanned.extract(new StringReader(text), streamed::add);
+        assertEquals(scanned.extract(text), streamed);
+    }
+
+    public void testBatchReportsTruncation() throws Exception {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle")).maxSnippets(1).build();
+        List<SnippetBatch.Result> results = SnippetBatch.builder(extractor).build()
+                .extract(Arrays.asList(document(5), "One needle only, in a single sentence."));
+
+        assertEquals(SnippetBatch.Status.COMPLETED, results.get(0).getStatus());
+        assertTrue(results.get(0).isTruncated());
+        assertFalse(results.get(1).isTruncated());
+    }
+}
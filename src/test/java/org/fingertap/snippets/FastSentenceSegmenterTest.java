@@ -0,0 +1,115 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FastSentenceSegmenterTest extends TestCase {
+    public FastSentenceSegmenterTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(FastSentenceSegmenterTest.class);
+    }
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy. In the West during the early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").";
+
+    private static List<String> sentences(SentenceSegmenter segmenter, String text) {
+        List<String> sentences = new ArrayList<>();
+        int[] start = {0};
+
+        segmenter.segment(text, 0, text.length(), end -> {
+            sentences.add(text.substring(start[0], end));
+            start[0] = end;
+        });
+
+        return sentences;
+    }
+
+    public void testCitationsStayWithTheirSentence() {
+        List<String> sentences = sentences(new FastSentenceSegmenter(), text);
+
+        assertEquals(4, sentences.size());
+        assertTrue(sentences.get(0).endsWith("about the universe.[nb 2] "));
+        assertTrue(sentences.get(1).startsWith("In an older"));
+        assertTrue(sentences.get(3).contains("interchangeably,[2]:p.3 and until"));
+        assertEquals(text, String.join("", sentences));
+    }
+
+    public void testDecimalsAbbreviationsAndInitials() {
+        String text = "Mr. Smith paid 3.50 dollars. He left! Did he? \"Yes.\" J. R. R. Tolkien wrote it in the U.S. See Fig. 3 too. Next one... ok. End";
+
+        assertEquals(Arrays.asList("Mr. Smith paid 3.50 dollars. ", "He left! ", "Did he? ", "\"Yes.\" ",
+                "J. R. R. Tolkien wrote it in the U.S. See Fig. 3 too. ", "Next one... ok. ", "End"),
+                sentences(new FastSentenceSegmenter(), text));
+    }
+
+    public void testLowercaseAfterTerminatorContinuesTheSentence() {
+        assertEquals(Arrays.asList("Apples, pears etc. are fruit. ", "Done."),
+                sentences(new FastSentenceSegmenter(), "Apples, pears etc. are fruit. Done."));
+    }
+
+    public void testBlankLineAndFullStopEndSentences() {
+        assertEquals(Arrays.asList("A heading\n\n", "Body text\nwraps here."),
+                sentences(new FastSentenceSegmenter(), "A heading\n\nBody text\nwraps here."));
+        assertEquals(Arrays.asList("\u4F60\u597D\u3002", "\u518D\u89C1\uFF01", "\u597D"),
+                sentences(new FastSentenceSegmenter(), "\u4F60\u597D\u3002\u518D\u89C1\uFF01\u597D"));
+    }
+
+    public void testCustomAbbreviations() {
+        String text = "Ask Dr. Who. Then Capt. Kirk.";
+
+        assertEquals(3, sentences(new FastSentenceSegmenter(Arrays.asList("Capt.")), text).size());
+        assertEquals(2, sentences(new FastSentenceSegmenter(), text).size());
+    }
+
+    public void testRespectsRange() {
+        List<Integer> ends = new ArrayList<>();
+        new FastSentenceSegmenter().segment(text, 10, 200, ends::add);
+
+        assertEquals(Arrays.asList(text.indexOf("In an older"), 200), ends);
+    }
+
+    public void testAgreesWithBreakIteratorOnPlainProse() {
+        StringBuilder prose = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            prose.append("Sentence number ").append(i).append(i % 3 == 0 ? " asks a question? " : i % 3 == 1 ? " says \"hello.\" " : " costs 3.5 units! ");
+
+        assertEquals(sentences(new BreakIteratorSentenceSegmenter(), prose.toString()),
+                sentences(new FastSentenceSegmenter(), prose.toString()));
+    }
+
+    public void testExtractionWithFastSegmenter() {
+        SnippetExtractor breakIterator = SnippetExtractor.builder().terms(Arrays.asList("philosophy")).build();
+        SnippetExtractor fast = SnippetExtractor.builder().terms(Arrays.asList("philosophy"))
+                .segmenter(new FastSentenceSegmenter()).build();
+
+        assertEquals(breakIterator.extract(text), fast.extract(text));
+
+        SnippetExtractor science = SnippetExtractor.builder().terms(Arrays.asList("Science", "systematic enterprise"))
+                .segmenter(new FastSentenceSegmenter()).build();
+        List<Snippet> snippets = science.extract(text);
+
+        assertEquals(4, snippets.size());
+        assertEquals(
+                "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2]",
+                snippets.get(0).getText());
+        assertEquals(snippets, science.extract(text, SentenceIndex.build(text, science)));
+    }
+
+    public void testStreamingWithFastSegmenter() throws Exception {
+        SnippetExtractor fast = SnippetExtractor.builder().terms(Arrays.asList("science", "philosophy"))
+                .segmenter(new FastSentenceSegmenter()).streamBufferSize(300).build();
+        List<Snippet> streamed = new ArrayList<>();
+
+        fast.extract(new StringReader(text), streamed::add);
+
+        assertEquals(fast.extract(text), streamed);
+    }
+}
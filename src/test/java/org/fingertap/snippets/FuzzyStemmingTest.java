@@ -0,0 +1,154 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class FuzzyStemmingTest extends TestCase {
+    public FuzzyStemmingTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(FuzzyStemmingTest.class);
+    }
+
+    private List<String> matches(SnippetQuery query, String text) {
+        List<String> found = new ArrayList<>();
+
+        for (MatchedTerm term : query.getMatcher().findMatches(text))
+            found.add(term.getText());
+
+        return found;
+    }
+
+    public void testFuzzyReportsSurfaceForm() {
+        SnippetQuery query = SnippetQuery.builder().fuzzy("separate", 1).fuzzy("receive", 2).build();
+
+        assertEquals(Arrays.asList("seperate", "Separate", "recieve", "separated"),
+                matches(query, "Please seperate them. Separate items we recieve, not separated ones."));
+    }
+
+    public void testFuzzyMatchesWholeWordsOnly() {
+        SnippetQuery query = SnippetQuery.parse("cat~");
+
+        assertEquals(Arrays.asList("cats", "bat", "cat", "at"), matches(query, "cats bat cat at dog concatenate scatter"));
+    }
+
+    public void testShortTermsAllowFewerEdits() {
+        // like Lucene's AUTO fuzziness: none up to 2 chars, one up to 5, two past that
+        assertEquals(Arrays.asList("cat", "at", "cut"), matches(SnippetQuery.parse("cat~2"), "cat a it to at cut"));
+        assertEquals(Arrays.asList("ox"), matches(SnippetQuery.parse("ox~"), "ox on x box"));
+        assertEquals(Arrays.asList("natural", "netural", "natrl"),
+                matches(SnippetQuery.parse("natural~2"), "natural netural natrl nation"));
+    }
+
+    public void testFuzzyAgreesWithEditDistance() {
+        Random random = new Random(42);
+
+        for (int n = 0; n < 2000; n++) {
+            String term = randomWord(random, 1 + random.nextInt(7));
+            String word = randomWord(random, 1 + random.nextInt(8));
+            int maxEdits = 1 + random.nextInt(2);
+
+            SnippetQuery query = SnippetQuery.builder().fuzzy(term, maxEdits).build();
+            int allowed = Math.min(maxEdits, term.length() <= 2 ? 0 : term.length() <= 5 ? 1 : 2);
+            boolean expected = distance(term, word) <= allowed;
+
+            assertEquals(term + " ~" + maxEdits + " " + word, expected, !matches(query, word).isEmpty());
+        }
+    }
+
+    public void testStemmedWordsMeet() {
+        SnippetQuery query = SnippetQuery.builder().stemming(true).word("study").word("running").build();
+
+        assertEquals(Arrays.asList("Studies", "studied", "studying", "run", "runs", "study"),
+                matches(query, "Studies studied studying; run, runs and study, but not student or rung."));
+    }
+
+    public void testStems() {
+        assertEquals("study", WordTerms.stem("studies"));
+        assertEquals("box", WordTerms.stem("boxes"));
+        assertEquals("sho", WordTerms.stem("shoes"));
+        assertEquals(WordTerms.stem("make"), WordTerms.stem("making"));
+        assertEquals(WordTerms.stem("class"), WordTerms.stem("classes"));
+        assertEquals(WordTerms.stem("need"), WordTerms.stem("needs"));
+        assertEquals("string", WordTerms.stem("string"));
+    }
+
+    public void testParseAndValidation() {
+        SnippetQuery query = SnippetQuery.parse("colour~ philosophy~2 science~ science");
+
+        assertEquals(Arrays.asList("colour", "philosophy", "science", "science"), query.getTerms());
+        assertEquals(Arrays.asList("color", "filosophy"), matches(SnippetQuery.parse("colour~ philosophy~2"), "color filosophy philosophies"));
+
+        try {
+            SnippetQuery.builder().fuzzy("natural science", 1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            SnippetQuery.builder().fuzzy("science", 3);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testSnippetsAndPositions() {
+        String text = "Sciense is a systematic enterprise that builds testable explanations. It organizes knowlege about the universe.";
+        SnippetExtractor extractor = SnippetExtractor.builder().query(SnippetQuery.parse("science~ knowledge~")).build();
+
+        assertEquals(Arrays.asList("Sciense", "knowlege"), matchedTerms(extractor.extract(text)));
+
+        // a stale position at another word is skipped, the one at the misspelt word matches it whole
+        TermPositions positions = TermPositions.of(Collections.singletonMap("science", new int[]{0, 13}));
+        assertEquals(Arrays.asList("Sciense"), matchedTerms(extractor.extract(text, null, positions)));
+
+        // as when scanning, a position inside a longer word doesn't start a word
+        String longer = text + " Its presciense.";
+        positions = TermPositions.of(Collections.singletonMap("science", new int[]{0, longer.indexOf("presciense") + 3}));
+        assertEquals(Arrays.asList("Sciense"), matchedTerms(extractor.extract(longer, null, positions)));
+    }
+
+    private static List<String> matchedTerms(List<Snippet> snippets) {
+        List<String> found = new ArrayList<>();
+
+        for (Snippet snippet : snippets) {
+            for (MatchedTerm term : snippet.getMatchedTerms())
+                found.add(term.getText());
+        }
+
+        return found;
+    }
+
+    private static String randomWord(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = "abcd".charAt(random.nextInt(4));
+
+        return new String(chars);
+    }
+
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0)
+                    d[i][j] = i + j;
+                else
+                    d[i][j] = Math.min(Math.min(d[i - 1][j], d[i][j - 1]) + 1,
+                            d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+            }
+        }
+
+        return d[a.length()][b.length()];
+    }
+}
@@ -0,0 +1,133 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class IncrementalSnippetsTest extends TestCase {
+    public IncrementalSnippetsTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(IncrementalSnippetsTest.class);
+    }
+
+    private static final String[] SENTENCES = {
+            "Science is a systematic enterprise that builds and organizes knowledge. ",
+            "Ok. ",
+            "In an older meaning, science also refers to this body of knowledge itself, of the type that can be rationally explained. ",
+            "Dr. Smith reads philosophy every day. ",
+            "Nothing to see here, just a line about the weather and the sea and the harbour at night. ",
+            "\n\n",
+            "Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy! ",
+            "Why? ",
+    };
+
+    private void assertSameAsFresh(SnippetExtractor extractor, IncrementalSnippets incremental, CharSequence text,
+                                   List<Snippet> mirror) {
+        List<Snippet> expected = extractor.extract(text.toString());
+        List<Snippet> actual = incremental.getSnippets();
+
+        assertEquals(expected, actual);
+        assertEquals(expected, mirror);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStartOffset(), actual.get(i).getStartOffset());
+            assertEquals(expected.get(i).getEndOffset(), actual.get(i).getEndOffset());
+            assertEquals(expected.get(i).getMatchedTerms().get(0).getSourceOffset(),
+                    actual.get(i).getMatchedTerms().get(0).getSourceOffset());
+        }
+    }
+
+    private static void apply(IncrementalSnippets.Change change, List<Snippet> mirror) {
+        List<Snippet> range = mirror.subList(change.getIndex(), change.getIndex() + change.getRemoved().size());
+
+        assertEquals(change.getRemoved(), range);
+        range.clear();
+        range.addAll(change.getAdded());
+    }
+
+    public void testAppendsMatchFreshExtraction() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science", "philosophy")).build();
+        IncrementalSnippets incremental = extractor.incremental();
+        StringBuilder text = new StringBuilder();
+        List<Snippet> mirror = new ArrayList<>();
+        Random random = new Random(3);
+
+        for (int n = 0; n < 200; n++) {
+            String sentence = SENTENCES[random.nextInt(SENTENCES.length)];
+            // appends also cut sentences in the middle, like a tailed file
+            String more = random.nextBoolean() ? sentence : sentence.substring(0, random.nextInt(sentence.length() + 1));
+
+            text.append(more);
+            apply(incremental.append(more), mirror);
+            assertSameAsFresh(extractor, incremental, text, mirror);
+        }
+    }
+
+    public void testReplacementsMatchFreshExtraction() {
+        for (SentenceSegmenter segmenter : Arrays.asList(BreakIteratorSentenceSegmenter.DEFAULT, new FastSentenceSegmenter())) {
+            SnippetExtractor extractor = SnippetExtractor.builder()
+                    .query(SnippetQuery.parse("science philosophy knowledge~"))
+                    .segmenter(segmenter)
+                    .build();
+            IncrementalSnippets incremental = extractor.incremental();
+            StringBuilder text = new StringBuilder();
+            List<Snippet> mirror = new ArrayList<>();
+            Random random = new Random(11);
+
+            for (int i = 0; i < 30; i++) {
+                String sentence = SENTENCES[random.nextInt(SENTENCES.length)];
+                text.append(sentence);
+                apply(incremental.append(sentence), mirror);
+            }
+
+            for (int n = 0; n < 300; n++) {
+                int start = random.nextInt(text.length() + 1);
+                int end = Math.min(text.length(), start + random.nextInt(40));
+                String sentence = SENTENCES[random.nextInt(SENTENCES.length)];
+                String replacement = sentence.substring(0, random.nextInt(sentence.length() + 1));
+
+                text.replace(start, end, replacement);
+                apply(incremental.replace(start, end, replacement), mirror);
+                assertSameAsFresh(extractor, incremental, text, mirror);
+            }
+        }
+    }
+
+    public void testEditsOnlyTouchNearbySnippets() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science")).build();
+        IncrementalSnippets incremental = extractor.incremental();
+        String sentence = SENTENCES[2];
+
+        for (int i = 0; i < 100; i++)
+            incremental.append(sentence);
+        assertEquals(100, incremental.getSnippets().size());
+
+        // a short tail is merged into the last sentence
+        IncrementalSnippets.Change change = incremental.append(SENTENCES[0]);
+        assertEquals(99, change.getIndex());
+        assertEquals(1, change.getRemoved().size());
+        assertEquals(1, change.getAdded().size());
+
+        int middle = 50 * sentence.length() + sentence.indexOf("science");
+        change = incremental.replace(middle, middle + "science".length(), "art");
+        assertEquals(-4, change.getShift());
+        assertTrue(change.getRemoved().size() <= 3);
+        assertEquals(change.getRemoved().size() - 1, change.getAdded().size());
+        assertEquals(99, incremental.getSnippets().size());
+    }
+
+    public void testRankedExtractorsAreRejected() {
+        try {
+            SnippetExtractor.builder().terms(Arrays.asList("science")).ranked(3, 500).build().incremental();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
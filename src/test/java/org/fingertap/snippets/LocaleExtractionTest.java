@@ -0,0 +1,94 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.text.BreakIterator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+public class LocaleExtractionTest extends TestCase {
+    public LocaleExtractionTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(LocaleExtractionTest.class);
+    }
+
+    private static final String CHINESE = "\u4E2D\u6587";
+    private static final String THAI = "\u0E2A\u0E27\u0E31\u0E2A\u0E14\u0E35\u0E04\u0E23\u0E31\u0E1A\u0E1C\u0E21\u0E0A\u0E37\u0E48\u0E2D";
+
+    private static String repeat(String text, int times, int at, String replacement) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++)
+            builder.append(i == at ? replacement : text);
+
+        return builder.toString();
+    }
+
+    public void testCjkSentenceIsWindowedAroundMatch() {
+        String text = repeat("\u6211\u559C", 300, 150, CHINESE) + "\u3002";
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList(CHINESE)).build();
+
+        List<Snippet> snippets = extractor.extract(text);
+        Snippet snippet = snippets.get(0);
+
+        assertEquals(1, snippets.size());
+        assertTrue(snippet.getText().startsWith("... "));
+        assertTrue(snippet.getText().endsWith(" ..."));
+        // one ideograph at a time, so the window overshoots by at most one char like a latin one does by a word
+        assertTrue(snippet.getEndOffset() - snippet.getStartOffset() <= extractor.getMaxSnippetLength() + 1);
+        assertEquals(4 + extractor.getLookaheadCount(), snippet.getMatchedTerms().get(0).getStartIndex());
+    }
+
+    public void testWholeWordQueryMatchesInsideCjkText() {
+        SnippetQuery query = SnippetQuery.parse(CHINESE + " cat");
+        String text = "\u6211\u559C\u6B22\u5B66\u4E60" + CHINESE + "\u3002 A category, not a cat.";
+
+        List<MatchedTerm> matches = query.getMatcher().findMatches(text);
+
+        assertEquals(2, matches.size());
+        assertEquals(CHINESE, matches.get(0).getText());
+        assertEquals(text.lastIndexOf("cat"), matches.get(1).getStartIndex());
+    }
+
+    public void testThaiLocaleWindowsEndOnDictionaryWords() {
+        Locale thai = new Locale("th");
+        String text = repeat(THAI, 40, -1, null);
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("\u0E1C\u0E21")).locale(thai)
+                .maxSnippetLength(50).build();
+
+        Snippet snippet = extractor.extract(text).get(0);
+        BreakIterator words = BreakIterator.getWordInstance(thai);
+        words.setText(text);
+
+        assertTrue(snippet.getText().endsWith(" ..."));
+        assertTrue(words.isBoundary((int) snippet.getEndOffset()));
+        assertTrue(words.isBoundary((int) snippet.getStartOffset()));
+    }
+
+    public void testWindowsNeverSplitSurrogatePairs() {
+        String text = repeat("\uD840\uDC00", 400, 201, CHINESE) + "\u3002";
+
+        for (int lookahead = 0; lookahead < 4; lookahead++) {
+            SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList(CHINESE)).lookahead(lookahead)
+                    .maxSnippetLength(51).build();
+            Snippet snippet = extractor.extract(text).get(0);
+
+            assertFalse(Character.isLowSurrogate(text.charAt((int) snippet.getStartOffset())));
+            assertFalse(Character.isLowSurrogate(text.charAt((int) snippet.getEndOffset())));
+        }
+    }
+
+    public void testLocaleSelectsSentenceIterator() {
+        SnippetExtractor japanese = SnippetExtractor.builder().terms(Arrays.asList(CHINESE)).locale(Locale.JAPANESE).build();
+        SentenceSegmenter fast = new FastSentenceSegmenter();
+
+        assertSame(BreakIteratorSentenceSegmenter.forLocale(Locale.JAPANESE), japanese.getSegmenter());
+        assertSame(fast, SnippetExtractor.builder().terms(Arrays.asList(CHINESE)).locale(Locale.JAPANESE)
+                .segmenter(fast).build().getSegmenter());
+    }
+}
@@ -0,0 +1,140 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MappedFileExtractionTest extends TestCase {
+    public MappedFileExtractionTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(MappedFileExtractionTest.class);
+    }
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy. In the West during the early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").";
+
+    private Path file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = Files.createTempFile("snippets", ".txt");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    public void testMappedExtractionMatchesInMemoryExtraction() throws Exception {
+        StringBuilder document = new StringBuilder();
+        for (int i = 0; i < 30; i++)
+            document.append(text).append(' ');
+        Files.write(file, document.toString().getBytes(StandardCharsets.UTF_8));
+
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("philosophy", "antiquity")).build();
+
+        assertEquals(extractor.extract(document), extractor.extract(file));
+    }
+
+    public void testShortSentencesAreMergedAsInMemory() throws Exception {
+        String[] words = {"a", "cat", "is", "sat", "fox", "philosophy", "over", "the", "science", "mat"};
+        String[] ends = {". ", "? ", "! ", "\n\n"};
+        Random random = new Random(11);
+
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("philosophy", "science")).streamBufferSize(1024).build();
+
+        for (int n = 0; n < 100; n++) {
+            StringBuilder document = new StringBuilder();
+            int sentences = 1 + random.nextInt(200);
+            for (int i = 0; i < sentences; i++) {
+                int length = 1 + random.nextInt(i % 7 == 0 ? 30 : 6);
+                for (int w = 0; w < length; w++)
+                    document.append(w == 0 ? "" : " ").append(words[random.nextInt(words.length)]);
+                document.append(ends[random.nextInt(ends.length)]);
+            }
+            Files.write(file, document.toString().getBytes(StandardCharsets.UTF_8));
+
+            List<Snippet> expected = extractor.extract(document);
+            List<Snippet> mapped = extractor.extract(file);
+            assertEquals(expected, mapped);
+            for (int i = 0; i < expected.size(); i++)
+                assertEquals(expected.get(i).getStartOffset(), mapped.get(i).getStartOffset());
+        }
+    }
+
+    public void testQueriesWithWordRulesReportByteOffsets() throws Exception {
+        String document = "Die Stra\u00dfe f\u00fchrt nach Z\u00fcrich, wo Philosophen philosophieren. ";
+        Files.write(file, document.getBytes(StandardCharsets.UTF_8));
+
+        SnippetExtractor extractor = SnippetExtractor.builder().query(SnippetQuery.parse("philosoph* z\u00fcrich")).build();
+        List<Snippet> snippets = extractor.extract(file);
+
+        assertEquals(extractor.extract(document), snippets);
+        MatchedTerm zurich = snippets.get(0).getMatchedTerms().get(0);
+        assertEquals("Z\u00fcrich", zurich.getText());
+        assertEquals(document.substring(0, document.indexOf("Z")).getBytes(StandardCharsets.UTF_8).length,
+                zurich.getByteOffset());
+    }
+
+    public void testRankedExtractorsAreRejected() throws Exception {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+
+        try {
+            SnippetExtractor.builder().terms(Arrays.asList("science")).ranked(2, 500).build().extract(file);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testByteAndCharOffsetsAcrossSegments() throws Exception {
+        StringBuilder document = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            document.append("Die Straße führt nach Zürich, 😀 où la Philosophie naît. ");
+        byte[] bytes = document.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(file, bytes);
+
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("zürich", "philosophie naît")).build();
+
+        List<Snippet> snippets;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            snippets = new MappedFileExtraction(extractor, channel, false, 10).extract();
+        }
+
+        assertFalse(snippets.isEmpty());
+
+        int matches = 0;
+        for (Snippet snippet : snippets) {
+            for (MatchedTerm matchedTerm : snippet.getMatchedTerms()) {
+                int source = (int) matchedTerm.getSourceOffset();
+                assertEquals(matchedTerm.getText(), document.substring(source, source + matchedTerm.getLength()));
+
+                byte[] term = matchedTerm.getText().getBytes(StandardCharsets.UTF_8);
+                byte[] atOffset = Arrays.copyOfRange(bytes, (int) matchedTerm.getByteOffset(),
+                        (int) matchedTerm.getByteOffset() + term.length);
+                assertTrue(Arrays.equals(term, atOffset));
+                matches++;
+            }
+        }
+        assertEquals(400, matches);
+    }
+
+    public void testOtherCharsetsAreDecodedByStreaming() throws Exception {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_16));
+
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("philosophy")).build();
+
+        assertEquals(extractor.extract(text), extractor.extract(file, StandardCharsets.UTF_16));
+    }
+}
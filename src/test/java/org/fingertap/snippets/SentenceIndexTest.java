@@ -0,0 +1,97 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+
+public class SentenceIndexTest extends TestCase {
+    public SentenceIndexTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SentenceIndexTest.class);
+    }
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy. In the West during the early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").";
+
+    public void testIndexedExtractionMatchesPlainExtraction() {
+        SnippetExtractor science = SnippetExtractor.builder().terms(Arrays.asList("science")).build();
+        SnippetExtractor philosophy = SnippetExtractor.builder().terms(Arrays.asList("philosophy", "knowledge")).build();
+        SentenceIndex index = SentenceIndex.build(text, science);
+
+        assertEquals(science.extract(text), science.extract(text, index));
+        assertEquals(philosophy.extract(text), philosophy.extract(text, index));
+        assertEquals(philosophy.extract(text), Snippets.of(text, philosophy, index).getSnippets());
+    }
+
+    public void testShortSentencesAreMerged() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science")).build();
+        SentenceIndex index = SentenceIndex.build(text, extractor);
+
+        for (int i = 0; i < index.size(); i++)
+            assertTrue(index.getEnd(i) - index.getStart(i) >= 100);
+
+        assertEquals(0, index.find(0));
+        assertEquals(index.size() - 1, index.find(text.length() - 1));
+    }
+
+    public void testIndexForOtherConfigurationIsRejected() {
+        SentenceIndex index = SentenceIndex.build(text, SnippetExtractor.builder().terms(Arrays.asList("science")).build());
+        SnippetExtractor other = SnippetExtractor.builder().terms(Arrays.asList("science")).minSnippetLength(10).build();
+
+        try {
+            other.extract(text, index);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testIndexForOtherSegmenterIsRejected() {
+        SnippetExtractor fast = SnippetExtractor.builder().terms(Arrays.asList("science"))
+                .segmenter(new FastSentenceSegmenter()).build();
+        SnippetExtractor plain = SnippetExtractor.builder().terms(Arrays.asList("science")).build();
+        SentenceIndex index = SentenceIndex.build(text, fast);
+
+        try {
+            plain.extract(text, index);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        // same abbreviations break the same way
+        SnippetExtractor again = SnippetExtractor.builder().terms(Arrays.asList("philosophy"))
+                .segmenter(new FastSentenceSegmenter()).build();
+        assertEquals(again.extract(text), again.extract(text, index));
+
+        SentenceIndexCache cache = new SentenceIndexCache(1 << 20);
+        assertSame(cache.get("a", 1, text, fast), cache.get("a", 1, text, again));
+        assertNotSame(cache.get("a", 1, text, fast), cache.get("a", 1, text, plain));
+        assertEquals(plain.extract(text), plain.extract(text, cache.get("a", 1, text, plain)));
+    }
+
+    public void testCacheEvictsByWeightAndVersion() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science")).build();
+        long weight = SentenceIndex.build(text, extractor).weight();
+        SentenceIndexCache cache = new SentenceIndexCache(2 * weight);
+
+        SentenceIndex first = cache.get("a", 1, text, extractor);
+        assertSame(first, cache.get("a", 1, text, extractor));
+        assertEquals(1, cache.hitCount());
+        assertNotSame(first, cache.get("a", 2, text, extractor));
+        assertEquals(1, cache.size());
+
+        cache.get("b", 1, text, extractor);
+        cache.get("a", 2, text, extractor);
+        cache.get("c", 1, text, extractor);
+
+        // b was least recently used
+        assertEquals(2, cache.size());
+        assertEquals(2 * weight, cache.weight());
+        long misses = cache.missCount();
+        cache.get("b", 1, text, extractor);
+        assertEquals(misses + 1, cache.missCount());
+    }
+}
@@ -0,0 +1,163 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SnippetBatchTest extends TestCase {
+    public SnippetBatchTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetBatchTest.class);
+    }
+
+    private final SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle")).build();
+
+    private List<String> documents(int count) {
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            documents.add("Document number " + i + " has a needle in it somewhere. " + (i % 3 == 0 ? "Another needle here." : ""));
+
+        return documents;
+    }
+
+    public void testResultsComeBackInInputOrder() throws Exception {
+        List<String> documents = documents(200);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<SnippetBatch.Result> results = SnippetBatch.builder(extractor)
+                    .executor(executor)
+                    .maxInFlight(3)
+                    .build()
+                    .extract(documents);
+
+            assertEquals(200, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i, results.get(i).getIndex());
+                assertEquals(SnippetBatch.Status.COMPLETED, results.get(i).getStatus());
+                assertEquals(extractor.extract(documents.get(i)), results.get(i).getSnippets());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testPathologicalDocumentTimesOut() throws Exception {
+        StringBuilder huge = new StringBuilder();
+        for (int i = 0; i < 200000; i++)
+            huge.append("A needle sentence number ").append(i).append(" that is long enough to stand on its own in the text. ");
+
+        List<CharSequence> documents = new ArrayList<>(documents(5));
+        documents.add(2, huge);
+
+        List<SnippetBatch.Result> results = SnippetBatch.builder(extractor)
+                .timeout(1, TimeUnit.MILLISECONDS)
+                .build()
+                .extract(documents);
+
+        assertEquals(6, results.size());
+        assertEquals(SnippetBatch.Status.TIMED_OUT, results.get(2).getStatus());
+        assertTrue(results.get(2).getSnippets().size() < 200000);
+    }
+
+    public void testTimeoutBoundsOneHugeSentence() throws Exception {
+        StringBuilder huge = new StringBuilder();
+        while (huge.length() < 16 << 20)
+            huge.append("a needle without any full stop goes on and on ");
+
+        long begin = System.nanoTime();
+        List<SnippetBatch.Result> results = SnippetBatch.builder(extractor)
+                .timeout(5, TimeUnit.MILLISECONDS)
+                .build()
+                .extract(Arrays.asList(huge));
+
+        assertEquals(SnippetBatch.Status.TIMED_OUT, results.get(0).getStatus());
+        assertTrue(System.nanoTime() - begin < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    public void testErrorFailsOnlyItsDocument() throws Exception {
+        CharSequence broken = new CharSequence() {
+            @Override
+            public int length() {
+                return 30;
+            }
+
+            @Override
+            public char charAt(int index) {
+                throw new AssertionError("broken");
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                throw new AssertionError("broken");
+            }
+        };
+        List<CharSequence> documents = new ArrayList<>(documents(5));
+        documents.add(1, broken);
+
+        // the lane rethrows the Error once it has drained every document
+        AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setUncaughtExceptionHandler((t, e) -> uncaught.set(e));
+            return thread;
+        });
+        try {
+            List<SnippetBatch.Result> results = SnippetBatch.builder(extractor)
+                    .executor(executor)
+                    .maxInFlight(1)
+                    .build()
+                    .submit(documents)
+                    .get(5, TimeUnit.SECONDS);
+
+            assertEquals(SnippetBatch.Status.FAILED, results.get(1).getStatus());
+            assertTrue(results.get(1).getError() instanceof AssertionError);
+            for (int i = 0; i < results.size(); i++) {
+                if (i != 1)
+                    assertEquals(SnippetBatch.Status.COMPLETED, results.get(i).getStatus());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < 500 && uncaught.get() == null; i++)
+            Thread.sleep(10);
+        assertTrue(uncaught.get() instanceof AssertionError);
+    }
+
+    public void testCancelledJob() throws Exception {
+        SnippetBatch.Job job = SnippetBatch.builder(extractor)
+                .executor(Runnable::run)
+                .build()
+                .submit(documents(0));
+        assertTrue(job.isDone());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+            });
+
+            job = SnippetBatch.builder(extractor).executor(executor).build().submit(documents(10));
+            job.cancel();
+
+            for (SnippetBatch.Result result : job.get(5, TimeUnit.SECONDS))
+                assertEquals(SnippetBatch.Status.CANCELLED, result.getStatus());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class SnippetBufferTest extends TestCase {
+    public SnippetBufferTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetBufferTest.class);
+    }
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy. In the West during the early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").";
+
+    public void testOffsetsDescribeTheSnippets() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science", "philosophy")).build();
+        List<Snippet> snippets = extractor.extract(text);
+        SnippetBuffer buffer = extractor.extract(text, new SnippetBuffer(1, 1));
+
+        assertEquals(snippets.size(), buffer.size());
+        assertEquals(snippets, buffer.toSnippets(text));
+
+        int matches = 0;
+        for (int i = 0; i < buffer.size(); i++) {
+            Snippet snippet = snippets.get(i);
+            assertEquals(snippet.getStartOffset(), buffer.getStart(i));
+            assertEquals(snippet.getEndOffset(), buffer.getEnd(i));
+            assertEquals(snippet.getMatchedTerms().size(), buffer.getMatchCount(i));
+
+            for (int m = buffer.getFirstMatch(i); m < buffer.getFirstMatch(i + 1); m++) {
+                String term = extractor.getMatcher().getTerm(buffer.getTermId(m));
+                String matched = text.substring(buffer.getMatchStart(m), buffer.getMatchStart(m) + buffer.getMatchLength(m));
+                assertTrue(term.equalsIgnoreCase(matched));
+                matches++;
+            }
+        }
+
+        assertEquals(matches, buffer.getTotalMatchCount());
+    }
+
+    public void testBufferIsClearedOnReuse() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("philosophy")).build();
+        SnippetBuffer buffer = new SnippetBuffer();
+
+        extractor.extract(text, buffer);
+        int size = buffer.size();
+
+        assertSame(buffer, extractor.extract(text, buffer));
+        assertEquals(size, buffer.size());
+        assertEquals(0, extractor.extract("nothing to see here", buffer).size());
+        assertEquals(0, buffer.getTotalMatchCount());
+    }
+
+    public void testRankedAndTruncatedSnippets() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            log.append("entry").append(i).append(i % 500 == 0 ? " needle " : " ");
+
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle")).ranked(3, 1000).build();
+        SnippetBuffer buffer = extractor.extract(log, new SnippetBuffer());
+
+        assertEquals(3, buffer.size());
+        assertTrue(buffer.hasLeadingEllipsis(1));
+        assertTrue(buffer.hasTrailingEllipsis(1));
+        assertEquals(extractor.extract(log), buffer.toSnippets(log));
+    }
+
+    public void testSnippetsWrapperMaterializesLazily() {
+        Snippets snippets = new Snippets(text, Arrays.asList("science"));
+
+        assertEquals(SnippetExtractor.builder().terms(Arrays.asList("science")).build().extract(text).size(),
+                snippets.getOffsets().size());
+        assertSame(snippets.getSnippets(), snippets.getSnippets());
+    }
+
+    public void testSnippetsOffsetsAreReadOnly() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science")).build();
+        Snippets snippets = Snippets.of(text, extractor);
+        int size = snippets.getOffsets().size();
+
+        try {
+            extractor.extract("Other science text.", snippets.getOffsets());
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(size, snippets.getOffsets().size());
+        assertEquals(extractor.extract(text), snippets.getSnippets());
+    }
+}
@@ -0,0 +1,132 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SnippetCacheTest extends TestCase {
+    public SnippetCacheTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetCacheTest.class);
+    }
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy.";
+
+    private SnippetExtractor extractor(String... terms) {
+        return SnippetExtractor.builder().query(SnippetQuery.parse(String.join(" ", terms))).build();
+    }
+
+    public void testEqualExtractorsShareEntries() {
+        SnippetCache cache = new SnippetCache(1 << 20);
+
+        Snippets first = cache.get(text, extractor("science", "knowledge"));
+        Snippets second = cache.get(new String(text), extractor("Science", "knowledge"));
+
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.hitCount());
+        assertEquals(Snippets.of(text, extractor("science", "knowledge")).getSnippets(), second.getSnippets());
+        assertSame(first.getOffsets(), second.getOffsets());
+
+        // other settings or other text miss
+        cache.get(text, SnippetExtractor.builder().query(SnippetQuery.parse("science knowledge")).maxSnippetLength(80).build());
+        cache.get(text, extractor("science~", "knowledge"));
+        cache.get(text + " More science.", extractor("science", "knowledge"));
+        assertEquals(4, cache.missCount());
+        assertEquals(4, cache.size());
+    }
+
+    public void testEvictsLeastRecentlyUsedByWeight() {
+        long weight = new SnippetCache(1 << 20).get(text, extractor("science")).getOffsets().weight() + 96;
+        SnippetCache cache = new SnippetCache(2 * weight);
+
+        cache.get(text, extractor("science"));
+        cache.get(text, extractor("knowledge"));
+        cache.get(text, extractor("science"));
+        cache.get(text, extractor("philosophy"));
+
+        // knowledge was least recently used
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertTrue(cache.weight() <= 2 * weight);
+
+        long misses = cache.missCount();
+        cache.get(text, extractor("science"));
+        assertEquals(misses, cache.missCount());
+        cache.get(text, extractor("knowledge"));
+        assertEquals(misses + 1, cache.missCount());
+    }
+
+    public void testTruncatedResultsAreNotCached() {
+        SnippetCache cache = new SnippetCache(1 << 20);
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science")).maxSnippets(1).build();
+
+        assertTrue(cache.get(text, extractor).isTruncated());
+        assertEquals(0, cache.size());
+    }
+
+    public void testCachedOffsetsCantBeCleared() {
+        Snippets snippets = new SnippetCache(1 << 20).get(text, extractor("science"));
+
+        try {
+            snippets.getOffsets().clear();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testConcurrentMissesExtractOnce() throws Exception {
+        AtomicInteger extractions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        SentenceSegmenter slow = (value, start, end, sentenceEnds) -> {
+            extractions.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            BreakIteratorSentenceSegmenter.DEFAULT.segment(value, start, end, sentenceEnds);
+        };
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science")).segmenter(slow).build();
+        SnippetCache cache = new SnippetCache(1 << 20);
+
+        int expected = Snippets.of(text, SnippetExtractor.builder().terms(Arrays.asList("science")).build()).getSnippets().size();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Snippets>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                results.add(executor.submit(() -> cache.get(text, extractor)));
+
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<Snippets> result : results)
+                assertEquals(expected, result.get().getSnippets().size());
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, extractions.get());
+        assertEquals(1, cache.missCount());
+        assertEquals(7, cache.hitCount());
+    }
+
+    public void testFingerprint() {
+        assertEquals(SnippetCache.fingerprint(text), SnippetCache.fingerprint(new StringBuilder(text)));
+        assertFalse(SnippetCache.fingerprint(text) == SnippetCache.fingerprint(text.replace("universe", "Universe")));
+        assertFalse(SnippetCache.fingerprint("ab") == SnippetCache.fingerprint("ba"));
+    }
+}
@@ -0,0 +1,85 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SnippetExtractorTest extends TestCase {
+    public SnippetExtractorTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetExtractorTest.class);
+    }
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy. In the West during the early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").";
+
+    public void testExtractMatchesSnippetsWrapper() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("philosophy", "science")).build();
+
+        assertEquals(new Snippets(text, Arrays.asList("philosophy", "science")).getSnippets(), extractor.extract(text));
+    }
+
+    public void testExtractAcceptsAnyCharSequence() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("philosophy")).build();
+
+        assertEquals(extractor.extract(text), extractor.extract(new StringBuilder(text)));
+    }
+
+    public void testConfigurationDefaults() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("philosophy")).build();
+
+        assertEquals(100, extractor.getMinSnippetLength());
+        assertEquals(200, extractor.getMaxSnippetLength());
+        assertEquals(7, extractor.getLookaheadCount());
+    }
+
+    public void testLongSentenceIsWindowedAroundMatch() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            log.append("entry").append(i).append(i == 1000 ? " needle " : " ");
+
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle")).build();
+        List<Snippet> snippets = extractor.extract(log);
+
+        assertEquals(1, snippets.size());
+
+        Snippet snippet = snippets.get(0);
+        assertTrue(snippet.getText().startsWith("... "));
+        assertTrue(snippet.getText().endsWith(" ..."));
+        assertTrue(snippet.getText().length() <= 200 + " ...".length() + "entry1234 ".length());
+
+        String window = snippet.getText().substring(4, snippet.getText().length() - 4);
+        assertTrue(log.indexOf(window) > 0);
+        assertTrue(window.contains("entry994 entry995 entry996 entry997 entry998 entry999 entry1000 needle"));
+
+        MatchedTerm matchedTerm = snippet.getMatchedTerms().get(0);
+        assertEquals("needle", matchedTerm.getText());
+        assertEquals(snippet.getText().indexOf("needle"), matchedTerm.getStartIndex());
+    }
+
+    public void testConcurrentExtraction() throws Exception {
+        final SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science", "knowledge")).build();
+        final List<Snippet> expected = extractor.extract(text);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Snippet>>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++)
+                futures.add(executor.submit(() -> extractor.extract(text)));
+
+            for (Future<List<Snippet>> future : futures)
+                assertEquals(expected, future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
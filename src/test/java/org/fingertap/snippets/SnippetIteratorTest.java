@@ -0,0 +1,113 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+public class SnippetIteratorTest extends TestCase {
+    public SnippetIteratorTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetIteratorTest.class);
+    }
+
+    private static final String[] SENTENCES = {
+            "Science is a systematic enterprise that builds and organizes knowledge. ",
+            "Ok. ",
+            "In an older meaning, science also refers to this body of knowledge itself, of the type that can be rationally explained. ",
+            "Nothing to see here, just a line about the weather and the sea and the harbour at night. ",
+            "\n\n",
+            "Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy! ",
+            "a very long sentence without any full stop that goes on and on about science and philosophy ",
+    };
+
+    private static String document(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length)
+            text.append(SENTENCES[random.nextInt(SENTENCES.length)]);
+
+        return text.toString();
+    }
+
+    // remembers how far into the text sentences have been broken
+    private static final class TrackingSegmenter implements SentenceSegmenter {
+        private final SentenceSegmenter segmenter = new FastSentenceSegmenter();
+        int segmented;
+
+        @Override
+        public void segment(CharSequence text, int start, int end, IntConsumer sentenceEnds) {
+            segmented = Math.max(segmented, end);
+            segmenter.segment(text, start, end, sentenceEnds);
+        }
+    }
+
+    public void testIteratorMatchesExtraction() {
+        Random random = new Random(17);
+
+        for (SentenceSegmenter segmenter : Arrays.asList(BreakIteratorSentenceSegmenter.DEFAULT, new FastSentenceSegmenter())) {
+            for (int bufferSize : new int[]{16, 300, 1 << 16}) {
+                SnippetExtractor extractor = SnippetExtractor.builder()
+                        .terms(Arrays.asList("science", "philosophy"))
+                        .segmenter(segmenter)
+                        .streamBufferSize(bufferSize)
+                        .build();
+
+                for (int n = 0; n < 20; n++) {
+                    String text = document(random, random.nextInt(20000));
+                    List<Snippet> expected = extractor.extract(text);
+                    List<Snippet> iterated = new ArrayList<>();
+                    extractor.iterator(text).forEachRemaining(iterated::add);
+
+                    assertEquals(expected, iterated);
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertEquals(expected.get(i).getStartOffset(), iterated.get(i).getStartOffset());
+                        assertEquals(expected.get(i).getEndOffset(), iterated.get(i).getEndOffset());
+                    }
+                }
+            }
+        }
+    }
+
+    public void testWorkStopsWithTheConsumer() {
+        TrackingSegmenter segmenter = new TrackingSegmenter();
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("science"))
+                .segmenter(segmenter)
+                .build();
+        String text = document(new Random(3), 1 << 20);
+
+        List<Snippet> first = extractor.stream(text).limit(2).collect(Collectors.toList());
+        assertTrue(segmenter.segmented <= 2 * StreamingExtraction.FIRST_CHUNK);
+        assertEquals(extractor.extract(text).subList(0, 2), first);
+
+        segmenter.segmented = 0;
+        Iterator<Snippet> snippets = extractor.iterator(text);
+        assertEquals(0, segmenter.segmented);
+        assertTrue(snippets.hasNext());
+        assertTrue(segmenter.segmented < text.length() / 100);
+    }
+
+    public void testEmptyAndRankedExtractors() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science")).build();
+
+        assertFalse(extractor.iterator(null).hasNext());
+        assertFalse(extractor.iterator("").hasNext());
+        assertFalse(SnippetExtractor.builder().build().iterator(SENTENCES[0]).hasNext());
+
+        try {
+            SnippetExtractor.builder().terms(Arrays.asList("science")).ranked(3, 500).build().iterator(SENTENCES[0]);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
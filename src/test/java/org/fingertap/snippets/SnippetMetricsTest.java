@@ -0,0 +1,70 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+
+public class SnippetMetricsTest extends TestCase {
+    public SnippetMetricsTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetMetricsTest.class);
+    }
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy. In the West during the early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").";
+
+    public void testCountsAndStagesAreRecorded() {
+        SnippetMetrics metrics = new SnippetMetrics();
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("science", "philosophy"))
+                .listener(metrics)
+                .build();
+
+        int snippets = extractor.extract(text).size() + extractor.extract(text).size();
+
+        assertEquals(2, metrics.getDocuments());
+        assertEquals(2 * text.length(), metrics.getTextChars());
+        assertEquals(snippets, metrics.getSnippets());
+        assertEquals(2 * SentenceIndex.build(text, extractor).size(), metrics.getSentences());
+        assertEquals(2 * extractor.getMatcher().findMatches(text).size(), metrics.getMatches());
+
+        for (ExtractionListener.Stage stage : ExtractionListener.Stage.values())
+            assertEquals(2, metrics.getStage(stage).getCount());
+        assertEquals(2, metrics.getDocumentNanos().getCount());
+        assertTrue(metrics.getDocumentNanos().getMax() > 0);
+
+        metrics.reset();
+        assertEquals(0, metrics.getDocuments());
+        assertEquals(0, metrics.getDocumentNanos().getCount());
+    }
+
+    public void testHistogramPercentiles() {
+        SnippetMetrics.Histogram histogram = new SnippetMetrics.Histogram();
+
+        for (long value = 1; value <= 10000; value++)
+            histogram.record(value);
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertEquals(10000, histogram.getValueAtPercentile(100));
+
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 5000 && median <= 5000 * 1.07);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 9900 && p99 <= 9900 * 1.07);
+    }
+
+    public void testBucketsCoverEveryValue() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = SnippetMetrics.Histogram.bucket(value);
+
+            assertTrue(SnippetMetrics.Histogram.lowerBound(bucket) <= value);
+            assertTrue(value < SnippetMetrics.Histogram.lowerBound(bucket + 1) || bucket == SnippetMetrics.Histogram.bucket(Long.MAX_VALUE));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SnippetQueryTest extends TestCase {
+    public SnippetQueryTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetQueryTest.class);
+    }
+
+    private List<String> matches(SnippetQuery query, String text) {
+        List<Snippet> snippets = SnippetExtractor.builder().query(query).build().extract(text);
+        List<String> found = new ArrayList<>();
+
+        for (Snippet snippet : snippets) {
+            for (MatchedTerm term : snippet.getMatchedTerms())
+                found.add(term.getText());
+        }
+
+        return found;
+    }
+
+    public void testWholeWordsOnly() {
+        SnippetQuery query = SnippetQuery.builder().word("art").build();
+
+        assertEquals(Arrays.asList("Art", "art"), matches(query, "Art, smart cartography and art."));
+        assertEquals(Arrays.asList("art", "art", "art"), matches(SnippetQuery.literal(Arrays.asList("art")), "smart cartography and art."));
+    }
+
+    public void testPrefixExtendsToEndOfWord() {
+        SnippetQuery query = SnippetQuery.parse("philos*");
+
+        assertEquals(Arrays.asList("philosophy", "Philosophers"), matches(query, "On philosophy and other Philosophers, not unphilosophical."));
+    }
+
+    public void testPhraseMatchesAcrossWhitespace() {
+        SnippetQuery query = SnippetQuery.parse("\"natural   science\" nature");
+
+        assertEquals(Arrays.asList("natural science", "nature"), query.getTerms());
+        assertEquals(Arrays.asList("natural\nscience", "nature"), matches(query, "A natural\nscience of nature, not supernatural sciences."));
+    }
+
+    public void testNormalizationDedupesAndDropsCoveredTerms() {
+        SnippetQuery query = SnippetQuery.builder()
+                .word("Science")
+                .word("SCIENCE")
+                .prefix("sci")
+                .word("scientist")
+                .prefix("scien*")
+                .substring("art")
+                .word("ART")
+                .build();
+
+        assertEquals(Arrays.asList("sci", "art"), query.getTerms());
+    }
+
+    public void testCoveredMatchesAreDropped() {
+        SnippetQuery query = SnippetQuery.parse("york \"new york\"");
+
+        assertEquals(Arrays.asList("New York", "york"), matches(query, "New York is not old york."));
+    }
+
+    public void testCaseFoldingIgnoresLocale() {
+        SnippetQuery query = SnippetQuery.parse("istanbul ΣΟΦΙΑ");
+
+        assertEquals(Arrays.asList("ISTANBUL", "σοφια"), matches(query, "From ISTANBUL with σοφια."));
+    }
+
+    public void testPathExtractionFallsBackForWordRules() throws Exception {
+        Path file = Files.createTempFile("query", ".txt");
+        try {
+            String text = "Art, smart cartography and art.";
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            SnippetExtractor extractor = SnippetExtractor.builder().query(SnippetQuery.parse("art")).build();
+
+            assertEquals(extractor.extract(text), extractor.extract(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SnippetRankerTest extends TestCase {
+    public SnippetRankerTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetRankerTest.class);
+    }
+
+    private final String text = filler(40) + "The telescope saw a comet. " + filler(40) +
+            "A comet passed near the orbit of a small moon, and the telescope tracked it. " + filler(40) +
+            "Another comet was reported. " + filler(40);
+
+    private static String filler(int words) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++)
+            builder.append("lorem ");
+
+        return builder.toString();
+    }
+
+    public void testBestWindowCoversMostDistinctTerms() {
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("comet", "telescope", "moon"))
+                .ranked(1, 1000)
+                .build();
+
+        List<Snippet> snippets = extractor.extract(text);
+
+        assertEquals(1, snippets.size());
+        assertTrue(snippets.get(0).getText().contains("A comet passed near the orbit of a small moon, and the telescope"));
+        assertEquals(3, snippets.get(0).getMatchedTerms().size());
+    }
+
+    public void testSnippetsDoNotOverlapAndRespectBudget() {
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("comet", "telescope", "moon"))
+                .maxSnippetLength(60)
+                .ranked(10, 150)
+                .build();
+
+        List<Snippet> snippets = extractor.extract(text);
+
+        assertFalse(snippets.isEmpty());
+
+        int total = 0;
+        for (Snippet snippet : snippets)
+            total += snippet.getText().length();
+        assertTrue(total <= 150);
+
+        for (int i = 0; i < snippets.size(); i++) {
+            for (int j = i + 1; j < snippets.size(); j++)
+                assertFalse(snippets.get(i).getText().equals(snippets.get(j).getText()));
+        }
+    }
+
+    public void testTermWeightsChangeTheWinner() {
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("saw", "reported"))
+                .termWeights(Collections.singletonMap("reported", 10.0))
+                .maxSnippetLength(40)
+                .ranked(1, 1000)
+                .build();
+
+        List<Snippet> snippets = extractor.extract(text);
+
+        assertEquals(1, snippets.size());
+        assertTrue(snippets.get(0).getText().contains("reported"));
+    }
+
+    public void testNoMatches() {
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("galaxy"))
+                .ranked(3, 1000)
+                .build();
+
+        assertTrue(extractor.extract(text).isEmpty());
+    }
+}
@@ -0,0 +1,87 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class SnippetRendererTest extends TestCase {
+    public SnippetRendererTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetRendererTest.class);
+    }
+
+    private Snippet snippet(String text, String... terms) {
+        List<Snippet> snippets = SnippetExtractor.builder().terms(Arrays.asList(terms)).build().extract(text);
+        assertEquals(1, snippets.size());
+        return snippets.get(0);
+    }
+
+    public void testHtmlHighlighting() {
+        SnippetRenderer renderer = SnippetRenderer.builder().build();
+        Snippet snippet = snippet("Fish & chips <b>are</b> served with fish sauce.", "fish");
+
+        assertEquals("<em>Fish</em> &amp; chips &lt;b&gt;are&lt;/b&gt; served with <em>fish</em> sauce.", renderer.render(snippet));
+    }
+
+    public void testOverlappingAndAdjacentMatchesAreMerged() {
+        Snippet snippet = snippet("the new york times", "new york", "york times", "new", "the");
+
+        assertEquals("<em>the new york times</em>", SnippetRenderer.builder().mergeGap(1).build().render(snippet));
+        assertEquals("<em>the</em> <em>new york times</em>", SnippetRenderer.builder().build().render(snippet));
+        assertEquals("<b>ab</b><b>cd</b>", SnippetRenderer.builder().tags("<b>", "</b>").mergeGap(-1).build()
+                .render(snippet("abcd", "ab", "cd")));
+        assertEquals("<b>abcd</b>", SnippetRenderer.builder().tags("<b>", "</b>").build()
+                .render(snippet("abcd", "ab", "cd")));
+    }
+
+    public void testJsonEscapesTextAndTags() {
+        SnippetRenderer renderer = SnippetRenderer.builder()
+                .tags("<em class=\"hl\">", "</em>")
+                .escaping(SnippetRenderer.Escaping.JSON)
+                .build();
+
+        assertEquals("say \\\"<em class=\\\"hl\\\">hello</em>\\\"\\tback\\\\slash",
+                renderer.render(snippet("say \"hello\"\tback\\slash", "hello")));
+    }
+
+    public void testBufferRenderingMatchesSnippetRendering() throws Exception {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 300; i++)
+            log.append("entrée").append(i).append(i == 150 ? " needle " : " ");
+
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("needle", "entrée149")).build();
+        SnippetRenderer renderer = SnippetRenderer.builder().build();
+        SnippetBuffer buffer = extractor.extract(log, new SnippetBuffer());
+        String expected = renderer.render(extractor.extract(log).get(0));
+
+        assertTrue(expected.startsWith("... "));
+        assertTrue(expected.contains("<em>entrée149</em> entrée150 <em>needle</em>"));
+
+        StringWriter writer = new StringWriter();
+        renderer.render(log.toString(), buffer, 0, writer);
+        assertEquals(expected, writer.toString());
+
+        ByteBuffer bytes = ByteBuffer.allocate(1024);
+        renderer.render(log, buffer, 0, bytes);
+        bytes.flip();
+        assertEquals(expected, StandardCharsets.UTF_8.decode(bytes).toString());
+    }
+
+    public void testByteBufferEncodesSupplementaryCharacters() {
+        ByteBuffer bytes = ByteBuffer.allocate(64);
+        SnippetRenderer.builder().escaping(SnippetRenderer.Escaping.NONE).build()
+                .render(snippet("smile 😀 please", "please"), bytes);
+        bytes.flip();
+
+        assertEquals("smile 😀 <em>please</em>", StandardCharsets.UTF_8.decode(bytes).toString());
+    }
+}
@@ -42,7 +42,7 @@ public class SnippetsTest extends TestCase {
 
         Snippet secondSnippet = snippets.get(1);
         assertEquals(
-                "... early modern period the words \"science\" and \" philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").",
+                "... early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").",
                 secondSnippet.getText());
         assertEquals(2, secondSnippet.getMatchedTerms().size());
 
@@ -80,7 +80,7 @@ public class SnippetsTest extends TestCase {
 
         Snippet secondSnippet = snippets.get(1);
         assertEquals(
-                "... early modern period the words \"science\" and \" philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").",
+                "... early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").",
                 secondSnippet.getText());
         assertEquals(2, secondSnippet.getMatchedTerms().size());
 
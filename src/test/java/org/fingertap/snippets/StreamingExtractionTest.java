@@ -0,0 +1,105 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class StreamingExtractionTest extends TestCase {
+    public StreamingExtractionTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(StreamingExtractionTest.class);
+    }
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy. In the West during the early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").";
+
+    private String document(int copies) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < copies; i++)
+            builder.append(text).append(' ');
+
+        return builder.toString();
+    }
+
+    public void testStreamingMatchesInMemoryExtraction() throws Exception {
+        String document = document(20);
+
+        for (int bufferSize : new int[]{1024, 4096, 1 << 16}) {
+            SnippetExtractor extractor = SnippetExtractor.builder()
+                    .terms(Arrays.asList("science", "philosophy"))
+                    .streamBufferSize(bufferSize)
+                    .build();
+
+            List<Snippet> streamed = new ArrayList<>();
+            extractor.extract(new StringReader(document), streamed::add);
+
+            assertEquals(extractor.extract(document), streamed);
+        }
+    }
+
+    public void testOffsetsAreAbsolute() throws Exception {
+        String document = document(10);
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("antiquity"))
+                .streamBufferSize(700)
+                .build();
+
+        List<Snippet> streamed = new ArrayList<>();
+        extractor.extract(new StringReader(document), streamed::add);
+
+        assertEquals(10, streamed.size());
+
+        long previous = -1;
+        for (Snippet snippet : streamed) {
+            String source = document.substring((int) snippet.getStartOffset(), (int) snippet.getEndOffset());
+            assertTrue(snippet.getText().contains(source));
+            assertTrue(snippet.getStartOffset() > previous);
+            previous = snippet.getStartOffset();
+        }
+    }
+
+    public void testLazyStreamOverChannel() {
+        String document = document(50);
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("philosophy"))
+                .streamBufferSize(2048)
+                .build();
+
+        List<Snippet> firstThree = extractor.stream(Channels.newReader(
+                Channels.newChannel(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8))),
+                StandardCharsets.UTF_8.name()))
+                .limit(3)
+                .collect(Collectors.toList());
+
+        assertEquals(extractor.extract(document).subList(0, 3), firstThree);
+    }
+
+    public void testSentenceLargerThanBufferIsCut() throws Exception {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            log.append("entry").append(i).append(i % 1000 == 500 ? " needle " : " ");
+
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("needle"))
+                .streamBufferSize(4096)
+                .build();
+
+        List<Snippet> streamed = new ArrayList<>();
+        extractor.extract(new StringReader(log.toString()), streamed::add);
+
+        assertEquals(5, streamed.size());
+        for (Snippet snippet : streamed)
+            assertEquals("needle", snippet.getMatchedTerms().get(0).getText());
+    }
+}
@@ -0,0 +1,76 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TermMatcherTest extends TestCase {
+    public TermMatcherTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TermMatcherTest.class);
+    }
+
+    public void testFindsAllTermsInOnePass() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("natural science", "science", "philosophy"));
+
+        List<MatchedTerm> matches = matcher.findMatches("Natural Science and natural philosophy.");
+
+        assertEquals(3, matches.size());
+        assertEquals(new MatchedTerm("Natural Science", 0), matches.get(0));
+        assertEquals(new MatchedTerm("Science", 8), matches.get(1));
+        assertEquals(new MatchedTerm("philosophy", 28), matches.get(2));
+    }
+
+    public void testOccurrencesOfSameTermDoNotOverlap() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("aa"));
+
+        List<MatchedTerm> matches = matcher.findMatches("aaaaa");
+
+        assertEquals(2, matches.size());
+        assertEquals(0, matches.get(0).getStartIndex());
+        assertEquals(2, matches.get(1).getStartIndex());
+    }
+
+    public void testTermsAreCaseFoldedAndDeduplicated() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("PHILosophy", "philosophy", " ", null));
+
+        assertEquals(1, matcher.size());
+        assertEquals("PHILosophy", matcher.getTerm(0));
+        assertEquals(1, matcher.findMatches("Philosophy of nature").size());
+    }
+
+    public void testSuffixTermsFoundThroughFailureLinks() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("she", "he", "hers"));
+        List<int[]> found = new ArrayList<>();
+
+        matcher.match("ushers", 0, 6, (termId, start, end) -> found.add(new int[]{termId, start, end}));
+
+        assertEquals(3, found.size());
+        assertTrue(Arrays.equals(new int[]{0, 1, 4}, found.get(0)));
+        assertTrue(Arrays.equals(new int[]{1, 2, 4}, found.get(1)));
+        assertTrue(Arrays.equals(new int[]{2, 2, 6}, found.get(2)));
+    }
+
+    public void testMatchRespectsRange() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("science"));
+        List<Integer> starts = new ArrayList<>();
+
+        matcher.match("science science science", 8, 15, (termId, start, end) -> starts.add(start));
+
+        assertEquals(Arrays.asList(8), starts);
+    }
+
+    public void testNoTerms() {
+        TermMatcher matcher = TermMatcher.compile(null);
+
+        assertEquals(0, matcher.size());
+        assertTrue(matcher.findMatches("anything").isEmpty());
+    }
+}
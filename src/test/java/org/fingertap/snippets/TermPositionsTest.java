@@ -0,0 +1,99 @@
+package org.fingertap.snippets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TermPositionsTest extends TestCase {
+    public TermPositionsTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TermPositionsTest.class);
+    }
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy. In the West during the early modern period the words \"science\" and \"philosophy of nature\" were sometimes used interchangeably,[2]:p.3 and until the 19th century natural philosophy (which is today called \"natural science\").";
+
+    private TermPositions index(String... terms) {
+        Map<String, int[]> positions = new HashMap<>();
+        String lower = text.toLowerCase();
+
+        for (String term : terms) {
+            IntArray offsets = new IntArray();
+            for (int i = lower.indexOf(term); i >= 0; i = lower.indexOf(term, i + term.length()))
+                offsets.add(i);
+
+            positions.put(term, offsets.toArray());
+        }
+
+        return TermPositions.of(positions);
+    }
+
+    public void testPositionsGiveSameSnippetsAsScanning() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("science", "philosophy", "knowledge")).build();
+        TermPositions positions = index("science", "philosophy", "knowledge");
+
+        assertEquals(extractor.extract(text), extractor.extract(text, null, positions));
+        assertEquals(extractor.extract(text), extractor.extract(text, SentenceIndex.build(text, extractor), positions));
+    }
+
+    public void testPositionsFollowTheTermRules() {
+        String text = "The cat sat on a catalog. Scattered cats took a cat\u00a0nap on it. Philosophy and philosophers.";
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .query(SnippetQuery.parse("cat \"cat nap\" philos*"))
+                .build();
+
+        // every occurrence of the raw text, as a plain substring index would report them
+        Map<String, int[]> positions = new HashMap<>();
+        String lower = text.toLowerCase().replace('\u00a0', ' ');
+        for (String term : Arrays.asList("cat", "cat nap", "philos")) {
+            IntArray offsets = new IntArray();
+            for (int i = lower.indexOf(term); i >= 0; i = lower.indexOf(term, i + 1))
+                offsets.add(i);
+
+            positions.put(term, offsets.toArray());
+        }
+
+        List<Snippet> scanned = extractor.extract(text);
+        assertEquals(scanned, extractor.extract(text, null, TermPositions.of(positions)));
+        assertTrue(scanned.toString().contains("philosophers"));
+    }
+
+    public void testRankedModeUsesPositions() {
+        SnippetExtractor extractor = SnippetExtractor.builder()
+                .terms(Arrays.asList("science", "philosophy"))
+                .ranked(2, 400)
+                .build();
+
+        assertEquals(extractor.extract(text), extractor.extract(text, null, index("science", "philosophy")));
+    }
+
+    public void testStalePositionsAreSkipped() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("philosophy")).build();
+        int[] offsets = index("philosophy").getPositions("PHILOSOPHY");
+
+        Map<String, int[]> positions = new HashMap<>();
+        int[] stale = Arrays.copyOf(offsets, offsets.length + 2);
+        stale[offsets.length] = 3;
+        stale[offsets.length + 1] = text.length() + 10;
+        positions.put("Philosophy", stale);
+
+        List<Snippet> snippets = extractor.extract(text, null, TermPositions.of(positions));
+        assertEquals(extractor.extract(text), snippets);
+    }
+
+    public void testTermsWithoutPositionsAreNotMatched() {
+        SnippetExtractor extractor = SnippetExtractor.builder().terms(Arrays.asList("philosophy", "universe")).build();
+
+        for (Snippet snippet : extractor.extract(text, null, index("philosophy"))) {
+            for (MatchedTerm term : snippet.getMatchedTerms())
+                assertEquals("philosophy", term.getText());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.fingertap.snippets.cli;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SnippetToolTest extends TestCase {
+    public SnippetToolTest(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SnippetToolTest.class);
+    }
+
+    private static final Pattern PATH = Pattern.compile("^\\{\"path\":\"([^\"]*)\"");
+
+    private final String text = "Science[nb 1] is a systematic enterprise that builds and organizes knowledge in the form of testable explanations and predictions about the universe.[nb 2] In an older and closely related meaning, \"science\" also refers to this body of knowledge itself, of the type that can be rationally explained and reliably applied. Ever since classical antiquity, science as a type of knowledge has been closely linked to philosophy.";
+
+    private Path directory;
+    private Path output;
+    private List<Path> files;
+    private ByteArrayOutputStream log;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("documents").toAbsolutePath();
+        output = Files.createTempDirectory("output").resolve("snippets.jsonl");
+        files = new ArrayList<>();
+        log = new ByteArrayOutputStream();
+
+        for (int i = 0; i < 30; i++) {
+            Path file = directory.resolve(i % 3 == 0 ? "nested/" + i + ".txt" : i + ".txt");
+            Files.createDirectories(file.getParent());
+            String body = i % 5 == 0 ? "Nothing to see here.\n" : text + "\nLine " + i;
+            Files.write(file, body.getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        Files.write(directory.resolve("ignored.bin"), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        for (Path root : new Path[]{directory, output.getParent()}) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(path);
+            }
+        }
+    }
+
+    private int run(String... args) {
+        return SnippetTool.run(args, new PrintStream(log, true));
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(output, StandardCharsets.UTF_8);
+    }
+
+    private static Set<String> paths(List<String> lines) {
+        Set<String> paths = new HashSet<>();
+
+        for (String line : lines) {
+            Matcher matcher = PATH.matcher(line);
+            assertTrue(line, matcher.find());
+            assertTrue("written twice: " + line, paths.add(matcher.group(1)));
+        }
+
+        return paths;
+    }
+
+    private Set<String> expectedPaths() {
+        return files.stream().map(Path::toString).collect(Collectors.toSet());
+    }
+
+    public void testWritesOneLinePerFile() throws IOException {
+        assertEquals(0, run("--query", "science philosophy", "--out", output.toString(), "--glob", "*.txt",
+                "--threads", "4", directory.toString()));
+
+        List<String> lines = lines();
+        assertEquals(expectedPaths(), paths(lines));
+
+        String line = lines.stream().filter(l -> l.contains("/1.txt\"")).findFirst().get();
+        assertTrue(line, line.contains("\"term\":\"philosophy\",\"offset\":" + text.indexOf("philosophy") + ","));
+        // quotes in the snippet text are escaped
+        assertTrue(line, line.contains("meaning, \\\"science\\\" also"));
+        assertTrue(lines.stream().filter(l -> l.contains("/5.txt\"")).findFirst().get().endsWith("\"snippets\":[]}"));
+        assertTrue(log.toString(), log.toString().contains("30 files"));
+    }
+
+    public void testResumesFromCheckpoint() throws IOException {
+        Path list = output.resolveSibling("files.txt");
+        Files.write(list, files.subList(0, 10).stream().map(Path::toString).collect(Collectors.toList()));
+
+        assertEquals(0, run("--query", "science", "--out", output.toString(), "--files", list.toString()));
+        assertEquals(10, lines().size());
+
+        // a crash: a line half written, and a checkpoint entry cut off before its newline
+        Path checkpoint = output.resolveSibling("snippets.jsonl.checkpoint");
+        Files.write(output, "{\"path\":\"half".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.write(checkpoint, ("+" + files.get(20) + "\n@99").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        assertEquals(0, run("--query", "science", "--out", output.toString(), "--glob", "*.txt", directory.toString()));
+        assertEquals(expectedPaths(), paths(lines()));
+        assertTrue(log.toString(), log.toString().contains("resuming, 10 files already done"));
+        assertTrue(log.toString(), log.toString().contains("10 skipped"));
+    }
+
+    public void testFailedFilesAreRetriedOnResume() throws IOException {
+        Path missing = directory.resolve("later.txt");
+        Path list = output.resolveSibling("files.txt");
+        Files.write(list, Arrays.asList(files.get(1).toString(), missing.toString()));
+
+        assertEquals(1, run("--query", "science", "--out", output.toString(), "--files", list.toString()));
+        assertTrue(lines().get(1), lines().get(1).contains("\"error\":"));
+        String checkpoint = new String(Files.readAllBytes(output.resolveSibling("snippets.jsonl.checkpoint")),
+                StandardCharsets.UTF_8);
+        assertFalse(checkpoint, checkpoint.contains(missing.toString()));
+
+        // the file that failed is tried again, its new line follows the error
+        Files.write(missing, text.getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, run("--query", "science", "--out", output.toString(), "--files", list.toString()));
+        List<String> lines = lines();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2), lines.get(2).startsWith("{\"path\":\"" + missing + "\",\"snippets\":[{"));
+    }
+
+    public void testMaxSnippetsAndByteOffsets() throws IOException {
+        Path file = directory.resolve("naive.txt");
+        Files.write(file, ("Na\u00efve " + text).getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, run("--query", "science knowledge", "--out", output.toString(), "--max-snippets", "1",
+                "--glob", "naive.txt", directory.toString()));
+
+        String line = lines().get(0);
+        assertEquals(line, 1, line.split("\"text\":", -1).length - 1);
+        // the \u00ef before the match takes two bytes
+        int offset = text.indexOf("Science") + "Na\u00efve ".length();
+        assertTrue(line, line.contains("\"offset\":" + offset + ",\"length\":7,\"byte_offset\":" + (offset + 1) + "}"));
+    }
+
+    public void testBadArguments() {
+        assertEquals(2, run("--query", "science", directory.toString()));
+        assertEquals(2, run("--query", "science", "--out", output.toString()));
+        assertEquals(2, run("--query", "science", "--out", output.toString(), "--threads", "0", directory.toString()));
+        assertTrue(log.toString().contains("usage: SnippetTool"));
+    }
+}